@@ -12,7 +12,6 @@ import org.cloudbus.cloudsim.vms.VmSimple;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class BasicApplication extends DistributedApplication {
 
@@ -38,12 +37,7 @@ public class BasicApplication extends DistributedApplication {
 
     @Override
     protected void orchestrate() {
-        try {
-            TimeUnit.SECONDS.sleep(1);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
+        sleep(1000);
         ended = true;
     }
 
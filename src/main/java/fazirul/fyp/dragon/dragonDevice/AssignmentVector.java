@@ -18,65 +18,178 @@ public class AssignmentVector {
     /**
      * Each element in the list represents a task and its actual {@link TaskAssignment assignment}.
      * Each index here corresponds to the index in the task list maintained by each edge device.
+     * Only modified through {@link #setAssignment(int, TaskAssignment)} and {@link #clear()}, to keep {@link #assignedTasks}.
      */
     protected final List<TaskAssignment> assignmentList = new ArrayList<>();
 
+    /**
+     * The tasks with a non-null assignment in {@link #assignmentList}, and how many there are.
+     */
+    private final BitSet assignedTasks = new BitSet();
+    private int numberOfAssignedTasks = 0;
+
     /**
      * If there are x tasks, y servers and z functions, there is a total of x*y*z possible assignments.
-     * <p>These assignments are sorted in increasing order based on the private utility. Private utility is randomly generated
-     * in {@link #generateRandomUtility()} during initialization of object.
+     * <p>Only the {@link #maximumCandidates} with the highest private utility are kept, sorted in decreasing order based on
+     * the private utility. Private utility is randomly generated in {@link #generateRandomUtility(int, ResourceBundle)}
+     * as each task is added.
      * </p>
      */
     private List<TaskAssignment> possibleAssignments = new ArrayList<>();
 
+    public static final int DEFAULT_MAXIMUM_CANDIDATES = 50;
+
+    private int maximumCandidates = DEFAULT_MAXIMUM_CANDIDATES;
+
+    /**
+     * A possible assignment, and the order in which it was generated. Among the same utility, the earliest is kept.
+     */
+    private static final class Candidate {
+        private final TaskAssignment assignment;
+        private final long sequence;
+
+        private Candidate(TaskAssignment assignment, long sequence) {
+            this.assignment = assignment;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * From the candidate to drop first to the candidate to keep last: lowest utility, then latest generated.
+     */
+    private static final Comparator<Candidate> CANDIDATE_ORDER = Comparator
+            .comparingInt((Candidate c) -> c.assignment.getPrivateUtility())
+            .thenComparing(Comparator.comparingLong((Candidate c) -> c.sequence).reversed());
+
+    /**
+     * The {@link #maximumCandidates} with the highest utility generated so far, the next one to drop at the head.
+     */
+    private final PriorityQueue<Candidate> topCandidates = new PriorityQueue<>(CANDIDATE_ORDER);
+    private long candidatesGenerated = 0;
+
+    /**
+     * True once {@link #topCandidates} changed since {@link #possibleAssignments} were sorted from it. Adding several
+     * tasks in a row thus sorts the candidates and builds the {@link #solver} once, before the next search.
+     */
+    private boolean possibleAssignmentsStale = true;
+
+    /**
+     * Searches the {@link #possibleAssignments} for an embedding, built again before a search once they change. Null
+     * before the first search.
+     */
+    private EmbeddingSolver solver;
+
+    /**
+     * The budget of each {@link #embedding(ResourceBundle[])}, kept here as the solver is built again.
+     * @see #setEmbeddingBudget(long, long)
+     */
+    private long embeddingNodeBudget = Long.MAX_VALUE;
+    private long embeddingTimeBudgetInNanoseconds = Long.MAX_VALUE;
+
+    /**
+     * The number of times the solver ran during the last {@link #embedding(ResourceBundle[])} or
+     * {@link #repairEmbedding(ResourceBundle[])}, and how many of them stopped at the budget: none if the repair kept
+     * every assignment, two if it fell back to a full search.
+     */
+    private int lastNumberOfSearches = 0;
+    private int lastNumberOfExhaustedSearches = 0;
+
+    private int numberOfEmbeddings = 0;
+    private long totalEmbeddingNodes = 0;
+    private int numberOfRepairs = 0;
+    private int numberOfRepairFallbacks = 0;
+
     public AssignmentVector(EdgeDeviceDragon edgeDevice) {
         this.edgeDevice = edgeDevice;
         List<ResourceBundle> tasks = edgeDevice.getTasks();
-        tasks.forEach(t -> assignmentList.add(null));
-        generateRandomUtility();
+        for (int taskID = 0; taskID < tasks.size(); taskID++) {
+            assignmentList.add(null);
+            generateRandomUtility(taskID, tasks.get(taskID));
+        }
     }
 
     public void addTask(ResourceBundle task) {
         assignmentList.add(null);
-        generateRandomUtility();
+        generateRandomUtility(assignmentList.size() - 1, task);
     }
 
     /**
-     * For each possible assignment, generate a random private utility and add this assignment to {@link #possibleAssignments}.
-     * Sort the list based on private utility generated.
+     * For each possible assignment of a new task, generate a random private utility and offer it to
+     * {@link #topCandidates}. The {@link #possibleAssignments} are sorted again from the candidates kept before the next
+     * search. Only the new task is walked, so adding t tasks one at a time generates each candidate once.
+     *
+     * @param taskID the index of the task in the task list of the edge device
+     * @param task the resources demanded by the task
      */
-    private void generateRandomUtility() {
-        int taskID = 0;
-        for (ResourceBundle task: edgeDevice.getTasks()) {
-            List<Integer> feasibleVms = edgeDevice.vmHandler.getFeasibleVirtualMachinesForTask(task);
+    private void generateRandomUtility(int taskID, ResourceBundle task) {
+        List<Integer> feasibleVms = edgeDevice.vmHandler.getFeasibleVirtualMachinesForTask(task);
 
-            //pick a random selection from the list of feasible Vms.
+        //pick a random selection from the list of feasible Vms.
+        if (!feasibleVms.isEmpty()) {
             Collections.shuffle(feasibleVms);
             int randomNumber = new Random().nextInt(feasibleVms.size() + 1);
             if (randomNumber == 0) { randomNumber = 1; }
-            if (feasibleVms.isEmpty()) {
-                continue;
-            }
             if (randomNumber > 3) {
                 randomNumber = 3;
             }
             feasibleVms = feasibleVms.subList(0, randomNumber);
 
-
             for (int virtualMachineID: feasibleVms) {
                 for (Server e: edgeDevice.getEdgeServers()) {
                     TaskAssignment toAdd = new TaskAssignment(taskID, e, virtualMachineID);
                     toAdd.setPrivateUtility((int) (Math.random() * 100)); //generates a random utility from 0 to 100.
-                    possibleAssignments.add(toAdd);
+                    offerCandidate(toAdd);
                 }
             }
-            taskID++;
         }
 
-        possibleAssignments.sort(Comparator.comparingInt(TaskAssignment::getPrivateUtility).reversed());
-        if (possibleAssignments.size() >= 50) {
-            possibleAssignments = possibleAssignments.subList(0, 50);
+        possibleAssignmentsStale = true;
+    }
+
+    /**
+     * Keeps the candidate if it is among the {@link #maximumCandidates} with the highest utility so far.
+     * @param candidate a possible assignment
+     */
+    private void offerCandidate(TaskAssignment candidate) {
+        topCandidates.add(new Candidate(candidate, candidatesGenerated++));
+        if (topCandidates.size() > maximumCandidates) {
+            topCandidates.poll();
+        }
+    }
+
+    /**
+     * Sorts the candidates kept into {@link #possibleAssignments}, and builds the {@link #solver} for them, if they
+     * changed since the last search.
+     */
+    private void rebuildPossibleAssignments() {
+        if (!possibleAssignmentsStale) { return; }
+        possibleAssignmentsStale = false;
+
+        Candidate[] kept = topCandidates.toArray(new Candidate[0]);
+        Arrays.sort(kept, CANDIDATE_ORDER.reversed());
+        possibleAssignments = new ArrayList<>(kept.length);
+        for (Candidate c: kept) {
+            possibleAssignments.add(c.assignment);
         }
+
+        solver = new EmbeddingSolver(possibleAssignments, assignmentList.size(), edgeDevice.vmHandler);
+        solver.setBudget(embeddingNodeBudget, embeddingTimeBudgetInNanoseconds);
+    }
+
+    /**
+     * Only keeps the possible assignments with the highest utility. Candidates already dropped are not generated again,
+     * thus a higher maximum only applies to the tasks added afterwards.
+     *
+     * @param maximum the number of possible assignments kept over all tasks
+     */
+    public void setMaximumCandidates(int maximum) {
+        maximumCandidates = maximum;
+        if (topCandidates.size() <= maximum) { return; }
+
+        while (topCandidates.size() > maximum) {
+            topCandidates.poll();
+        }
+        possibleAssignmentsStale = true;
     }
 
     /**
@@ -84,6 +197,23 @@ public class AssignmentVector {
      */
     protected void clear() {
         assignmentList.replaceAll(t -> null);
+        assignedTasks.clear();
+        numberOfAssignedTasks = 0;
+    }
+
+    /**
+     * @param task the index of the task
+     * @param assignment the new assignment of the task, null to clear it
+     */
+    private void setAssignment(int task, TaskAssignment assignment) {
+        assignmentList.set(task, assignment);
+        if (assignment != null && !assignedTasks.get(task)) {
+            assignedTasks.set(task);
+            numberOfAssignedTasks++;
+        } else if (assignment == null && assignedTasks.get(task)) {
+            assignedTasks.clear(task);
+            numberOfAssignedTasks--;
+        }
     }
 
     /**
@@ -91,24 +221,23 @@ public class AssignmentVector {
      *  @return true if there are enough resources available.
      */
     protected boolean isOffloadPossible() {
-        HashMap<Server, ResourceBundle> resourceAvailable = edgeDevice.getResourceAvailableInServers();
-        HashMap<Server, ResourceBundle> resourceDemanded = new HashMap<>();
+        ResourceBundle[] resourceAvailable = edgeDevice.getResourceAvailableInServers();
+        ResourceBundle[] resourceDemanded = new ResourceBundle[resourceAvailable.length];
         for (TaskAssignment t: assignmentList) {
             if (t == null) { continue; }
-            ResourceBundle currResourceDemanded = resourceDemanded.get(t.getServer());
-            if (currResourceDemanded == null) {
-                currResourceDemanded = new ResourceBundle(0, 0, 0);
+            int e = t.getServer().getIndex();
+            if (resourceDemanded[e] == null) {
+                resourceDemanded[e] = new ResourceBundle(0, 0, 0);
             }
-            currResourceDemanded.addResources(edgeDevice.vmHandler.getVmResourceUsage(t.getVirtualMachineID()));
-            resourceDemanded.put(t.getServer(), currResourceDemanded);
+            resourceDemanded[e].addResources(edgeDevice.vmHandler.getVmResourceUsage(t.getVirtualMachineID()));
         }
 
-        for (Server e: resourceAvailable.keySet()) {
-            ResourceBundle avail = resourceAvailable.get(e);
-            ResourceBundle want = resourceDemanded.get(e);
+        for (int e = 0; e < resourceAvailable.length; e++) {
+            ResourceBundle avail = resourceAvailable[e];
+            ResourceBundle want = resourceDemanded[e];
 
             if (want == null) { continue; }
-            if (!avail.isBounded(want)) { return false; }
+            if (avail == null || !avail.isBounded(want)) { return false; }
         }
         return true;
     }
@@ -117,57 +246,196 @@ public class AssignmentVector {
      * Find the combination of task assignments with the highest total utility where the total resource usage is bounded by the maximum resources given.
      * This method directly modifies the assignment vector.
      *
-     * @param maximumResources the bound restriction such that the assignment does not exceed this amount
-     * @return true if such combination is found
+     * @param maximumResources the bound restriction such that the assignment does not exceed this amount, at the
+     *                         {@link Server#getIndex() index} of each server. Not modified.
+     * @return true if such combination is found. With a budget, the combination may not have the highest total utility.
      *
-     * @see #embedding(HashMap, HashSet, int)
+     * @see EmbeddingSolver
+     * @see #isLastEmbeddingBudgetExhausted()
      */
-    protected boolean embedding(HashMap<Server, ResourceBundle> maximumResources) {
+    protected boolean embedding(ResourceBundle[] maximumResources) {
+        numberOfEmbeddings++;
+        lastNumberOfSearches = 0;
+        lastNumberOfExhaustedSearches = 0;
+        return search(maximumResources);
+    }
+
+    /**
+     * Replaces the combination of task assignments with the one found by the solver, as part of the current call to
+     * {@link #embedding(ResourceBundle[])} or {@link #repairEmbedding(ResourceBundle[])}.
+     */
+    private boolean search(ResourceBundle[] maximumResources) {
         clear();
-        return embedding(maximumResources, new HashSet<>(), 0);
+        rebuildPossibleAssignments();
+        TaskAssignment[] result = solver.solve(maximumResources);
+        recordSearch();
+        if (result == null) { return false; }
+
+        for (int task = 0; task < result.length; task++) {
+            setAssignment(task, result[task]);
+        }
+        return true;
+    }
+
+    private void recordSearch() {
+        lastNumberOfSearches++;
+        if (solver.isBudgetExhausted()) {
+            lastNumberOfExhaustedSearches++;
+        }
+        totalEmbeddingNodes += solver.getNodes();
     }
 
     /**
-     * Find the combination of task assignments with the highest total utility where the total resource usage is bounded by the maximum resources given.
-     * Directly modifies the {@link #assignmentList}.
+     * Repairs the current combination of task assignments so that it is bounded by the maximum resources given, e.g.
+     * after the residual resources of a few servers have shrunk. On each server, the assignments are kept from the highest
+     * to the lowest utility while they still fit, and only the tasks displaced are searched again, within what the
+     * assignments kept leave. If they cannot be placed, or there is no combination yet, falls back to a full search as
+     * {@link #embedding(ResourceBundle[])}. The repair and its fallback count as one embedding, but as two searches.
      *
-     * @param maximumResources the bound restriction such that the assignment does not exceed this amount
-     * @param ignoredTasks a set of tasks to ignore. Tasks are ignored when it has a non-null assignment in {@link #assignmentList}.
-     * @param startIndex start from this index when iterating through {@link #possibleAssignments}.
+     * <p>The result may not have the highest total utility, as the assignments kept are not reconsidered.</p>
+     *
+     * @param maximumResources the bound restriction such that the assignment does not exceed this amount, at the
+     *                         {@link Server#getIndex() index} of each server. Not modified.
      * @return true if such combination is found
-     * 
-     * @see #embedding(HashMap) 
      */
-    private boolean embedding(HashMap<Server, ResourceBundle> maximumResources, HashSet<Integer> ignoredTasks, int startIndex) {
-        if (ignoredTasks == null) {
-            ignoredTasks = new HashSet<>();
-        }
+    protected boolean repairEmbedding(ResourceBundle[] maximumResources) {
+        if (!isCompleted()) { return embedding(maximumResources); }
 
-        if (isCompleted()) { return true; } // base case
+        ResourceBundle[] residual = new ResourceBundle[maximumResources.length];
+        for (int e = 0; e < maximumResources.length; e++) {
+            residual[e] = maximumResources[e] == null ? new ResourceBundle(0, 0, 0) : maximumResources[e].clone();
+        }
 
-        for (int idx = startIndex; idx < possibleAssignments.size(); idx++) {
-            TaskAssignment t = possibleAssignments.get(idx);
+        List<TaskAssignment> byUtility = new ArrayList<>(assignmentList);
+        byUtility.sort(Comparator.comparingInt(TaskAssignment::getPrivateUtility).reversed());
+        BitSet displaced = new BitSet(assignmentList.size());
+        for (TaskAssignment t: byUtility) {
             ResourceBundle resourceDemanded = edgeDevice.vmHandler.getVmResourceUsage(t.getVirtualMachineID());
-            Server e = t.getServer();
+            ResourceBundle serverResidual = residual[t.getServer().getIndex()];
+            if (serverResidual.isBounded(resourceDemanded)) {
+                serverResidual.deductResources(resourceDemanded);
+            } else {
+                displaced.set(t.getTaskID());
+            }
+        }
+        lastNumberOfSearches = 0;
+        lastNumberOfExhaustedSearches = 0;
+        if (displaced.isEmpty()) { return true; } //every assignment still fits
 
-            // if task is ignored or exceeds maximum resources, we skip
-            if (ignoredTasks.contains(t.getTaskID()) || !maximumResources.get(e).isBounded(resourceDemanded)) { continue; }
+        numberOfEmbeddings++;
+        rebuildPossibleAssignments();
+        TaskAssignment[] repaired = solver.solve(residual, displaced);
+        recordSearch();
+        if (repaired == null) {
+            numberOfRepairFallbacks++;
+            return search(maximumResources);
+        }
 
-            assignmentList.set(t.getTaskID(), t); // set the assignment for task in the assignment list
-            ignoredTasks.add(t.getTaskID()); //task is now ignored
-            maximumResources.get(e).deductResources(resourceDemanded); //reduce maximumResources for next recursive call
+        numberOfRepairs++;
+        for (int task = displaced.nextSetBit(0); task >= 0; task = displaced.nextSetBit(task + 1)) {
+            setAssignment(task, repaired[task]);
+        }
+        return true;
+    }
 
+    /**
+     * @return the number of calls to {@link #repairEmbedding(ResourceBundle[])} that repaired the combination without a
+     * full search
+     */
+    public int getNumberOfRepairs() {
+        return numberOfRepairs;
+    }
 
-            if (embedding(maximumResources, ignoredTasks, idx)) { return true; } //recursion call
+    /**
+     * @return the number of calls to {@link #repairEmbedding(ResourceBundle[])} that fell back to a full search
+     */
+    public int getNumberOfRepairFallbacks() {
+        return numberOfRepairFallbacks;
+    }
 
-            //else, this embedding does not work. Undo the previous assignment and try next one.
-            assignmentList.set(t.getTaskID(), null);
-            ignoredTasks.remove(t.getTaskID());
-            maximumResources.get(e).addResources(resourceDemanded);
+    /**
+     * Bounds the search of each {@link #embedding(ResourceBundle[])}. Once spent, the best combination found so far is
+     * used. The time is that of the wall clock, thus also spent in virtual time mode, while the number of nodes is
+     * reproducible.
+     *
+     * @param maximumNodes the number of nodes of the search tree to visit, Long.MAX_VALUE for no limit
+     * @param maximumTimeInMilliseconds the time to search, Long.MAX_VALUE for no limit
+     */
+    public void setEmbeddingBudget(long maximumNodes, long maximumTimeInMilliseconds) {
+        embeddingNodeBudget = maximumNodes;
+        embeddingTimeBudgetInNanoseconds = maximumTimeInMilliseconds == Long.MAX_VALUE ? Long.MAX_VALUE
+                : maximumTimeInMilliseconds * 1_000_000;
+        if (solver != null) {
+            solver.setBudget(embeddingNodeBudget, embeddingTimeBudgetInNanoseconds);
         }
+    }
+
+    /**
+     * @return true if {@link #embedding(ResourceBundle[])} has a budget
+     */
+    public boolean hasEmbeddingBudget() {
+        return embeddingNodeBudget != Long.MAX_VALUE || embeddingTimeBudgetInNanoseconds != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the number of times the solver ran during the last {@link #embedding(ResourceBundle[])} or
+     * {@link #repairEmbedding(ResourceBundle[])}: 0 if the repair kept every assignment as it was, 2 if it fell back to a
+     * full search
+     */
+    public int getLastNumberOfSearches() {
+        return lastNumberOfSearches;
+    }
+
+    /**
+     * @return how many of the {@link #getLastNumberOfSearches() last searches} stopped at their budget
+     */
+    public int getLastNumberOfExhaustedSearches() {
+        return lastNumberOfExhaustedSearches;
+    }
+
+    /**
+     * @return true if the search that gave the last combination stopped at its budget, thus the combination found is
+     * not proven to have the highest total utility, and not finding one does not mean that there is none. False if no
+     * search ran.
+     */
+    public boolean isLastEmbeddingBudgetExhausted() {
+        return lastNumberOfSearches > 0 && solver.isBudgetExhausted();
+    }
+
+    /**
+     * @return the number of nodes of the search tree visited by the last {@link #embedding(ResourceBundle[])}
+     */
+    public long getLastEmbeddingNodes() {
+        return solver == null ? 0 : solver.getNodes();
+    }
 
-        // we have exhausted through every possible combination
-        return false;
+    /**
+     * @return the number of branches cut by the utility bound during the last {@link #embedding(ResourceBundle[])}
+     */
+    public long getLastEmbeddingBoundPrunes() {
+        return solver == null ? 0 : solver.getBoundPrunes();
+    }
+
+    /**
+     * @return the number of branches cut as a task could no longer be assigned, during the last {@link #embedding(ResourceBundle[])}
+     */
+    public long getLastEmbeddingInfeasiblePrunes() {
+        return solver == null ? 0 : solver.getInfeasiblePrunes();
+    }
+
+    /**
+     * @return the number of calls to {@link #embedding(ResourceBundle[])}, and to
+     * {@link #repairEmbedding(ResourceBundle[])} that searched, so far. A repair that fell back counts once.
+     */
+    public int getNumberOfEmbeddings() {
+        return numberOfEmbeddings;
+    }
+
+    /**
+     * @return the sum of {@link #getLastEmbeddingNodes()} over every search so far, fallbacks included
+     */
+    public long getTotalEmbeddingNodes() {
+        return totalEmbeddingNodes;
     }
 
     /**
@@ -175,10 +443,6 @@ public class AssignmentVector {
      * @return true if {@link #assignmentList} has no null values.
      */
     protected boolean isCompleted() {
-        for(TaskAssignment t: assignmentList) {
-            if (t == null) { return false; }
-        }
-
-        return true;
+        return numberOfAssignedTasks == assignmentList.size();
     }
 }
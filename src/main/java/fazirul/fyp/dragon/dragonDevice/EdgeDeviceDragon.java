@@ -11,27 +11,53 @@ import org.cloudbus.cloudsim.core.events.SimEvent;
 import org.cloudbus.cloudsim.utilizationmodels.UtilizationModelFull;
 import org.cloudbus.cloudsim.vms.Vm;
 
-import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class EdgeDeviceDragon extends DistributedApplication {
     private static final long CLOUDLET_LENGTH = 1;
-    private final long TIME_TO_WAIT = 100;
+    private static final int FULL_SYNC_INTERVAL = 10;
     protected final AssignmentVector assignments;
     protected GlobalData globalData;
-    protected final HashMap<Server, Double> maxBidRatio = new HashMap<>();
+    /**
+     * The max bid ratio on each server, at the {@link Server#getIndex() index} of the server.
+     */
+    protected final double[] maxBidRatio;
     private final HashMap<Integer, Double> taskLength = new HashMap<>();
 
+    /**
+     * Reused buffer for the messages taken out of {@link #incomingMessages}.
+     */
+    private MessageInterface[] inbox = new MessageInterface[0];
+
+    /**
+     * For each neighbour, the {@link GlobalData#getRevision() revision} of globalData at the last message sent to it.
+     * @see #broadcastGlobalData()
+     */
+    private long[] lastSentRevision = new long[0];
+
+    /**
+     * For each neighbour, the number of messages sent to it. Used to decide when to do a full sync.
+     */
+    private int[] messagesSentToNeighbour = new int[0];
+
+    /**
+     * What to do when the search for an embedding stops at its budget.
+     * @see #setEmbeddingBudget(long, long, EmbeddingBudgetPolicy)
+     */
+    private EmbeddingBudgetPolicy embeddingBudgetPolicy = EmbeddingBudgetPolicy.BEST_SO_FAR;
+
 
     protected final VirtualMachineHandler vmHandler = VirtualMachineHandler.getInstance();
 
     public EdgeDeviceDragon(CloudSim simulation, String username, double arrivalTime, List<ResourceBundle> tasks) {
         super(simulation, username, arrivalTime, tasks);
         assignments = new AssignmentVector(this);
-        globalData = new GlobalData(this, getDistSimManager().getNumParticipatingApplications());
-        getEdgeServers().forEach(e -> maxBidRatio.put(e, Double.MAX_VALUE));
+        globalData = new GlobalData(this, getDistSimManager().getNumberOfSlots());
+        maxBidRatio = new double[getNumberOfServers()];
+        Arrays.fill(maxBidRatio, Double.MAX_VALUE);
     }
 
 
@@ -69,53 +95,28 @@ public class EdgeDeviceDragon extends DistributedApplication {
         }
     }
 
-    @Override
-    protected void orchestrate() {
-        orchestrate(false);
-    }
-
     /**
      * See Algorithm 1 in DRAGON paper.
      *
-     * <p>NOTE: upon each successful agreement, we wait a certain amount of time, re-run the agreement again
-     * as a double-confirmation mechanism i.e. a device is considered completed & successful if agreement is successful
-     * two times in a row within a specified time period.
+     * <p>NOTE: when there is nothing new to process (no messages, or agreement with all of them), the device waits for
+     * the next message. It is considered completed once the whole distributed simulation is quiescent, i.e. every device
+     * waits and no message is left (see {@link fazirul.fyp.elements.TerminationDetector}).
      * </p>
-     * @param repeat if true, wait for {@link #TIME_TO_WAIT} seconds
+     * @see #awaitMessagesOrTermination()
      */
-    private void orchestrate(boolean repeat) {
-        if (repeat) {
-            try {
-                TimeUnit.MILLISECONDS.sleep(TIME_TO_WAIT);
-            } catch(Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-        List<MessageInterface> messages = incomingMessages.flush();
-        if (messages.isEmpty()) {
-            if (repeat) {
-                ended = true;
-                return;
-            }
-            orchestrate(true);
+    @Override
+    protected void orchestrate() {
+        int numberOfMessages = takeMessages(inbox);
+        if (numberOfMessages == 0) {
+            ended = awaitMessagesOrTermination();
             return;
         }
 
-        //get the latest messages from each neighbour (in case there are more than 1 messages from the neighbour)
-        HashMap<Integer, Message> latestMessages = new HashMap<>();
-        for (MessageInterface m: messages) {
-            Message message = (Message) m;
-            if (latestMessages.get(message.getSenderID()) == null ||
-                    latestMessages.get(message.getSenderID()).getTimestamp().isBefore(message.getTimestamp())) {
-                latestMessages.put(message.getSenderID(), message);
-            }
-        }
-
+        //the mailbox only keeps the latest message from each neighbour
         boolean agreementSuccess = true;
         //must agree with all incoming messages for the agreement to succeed
-        for (Message message: latestMessages.values()) {
-            if (!globalData.agreement(message)) {
+        for (int i = 0; i < numberOfMessages; i++) {
+            if (!globalData.agreement((Message) inbox[i])) {
                 agreementSuccess = false;
                 break;
             }
@@ -123,20 +124,21 @@ public class EdgeDeviceDragon extends DistributedApplication {
 
 
         if (agreementSuccess) {
-            if (repeat) { ended = true; }
-            else { orchestrate(true); }
+            Arrays.fill(inbox, 0, numberOfMessages, null);
+            ended = awaitMessagesOrTermination();
             return;
         }
 
         //agreement failed, update the new info from messages received
-        for (Message message: latestMessages.values()) {
-            globalData.update(message.getData());
+        for (int i = 0; i < numberOfMessages; i++) {
+            globalData.update((Message) inbox[i]);
         }
+        Arrays.fill(inbox, 0, numberOfMessages, null); //do not hold on to the messages until the next step
 
-        HashMap<Server, Election> electionResults = globalData.election();
+        Election[] electionResults = globalData.election();
         while(outvoted(electionResults)) {
             updateMaxBidRatio(electionResults);
-            if (!assignments.embedding(getResidualResourcesFromElection(electionResults))) {
+            if (!embedding(getResidualResourcesFromElection(electionResults), true)) {
                 ended = true;
                 failed = true;
                 return;
@@ -146,25 +148,95 @@ public class EdgeDeviceDragon extends DistributedApplication {
             electionResults = globalData.election();
         }
 
-        broadcast(new Message(globalData, getIndex(), LocalTime.now()));
+        broadcastGlobalData();
+    }
+
+    /**
+     * Sends the changes in {@link #globalData} since the last message to each neighbour.
+     * Every {@link #FULL_SYNC_INTERVAL} messages to the same neighbour, the whole globalData is sent instead.
+     *
+     * @see GlobalData#createMessage(int, long, long)
+     */
+    private void broadcastGlobalData() {
+        int numberOfNeighbours = getNumberOfNeighbours();
+        if (lastSentRevision.length != numberOfNeighbours) {
+            lastSentRevision = new long[numberOfNeighbours];
+            messagesSentToNeighbour = new int[numberOfNeighbours];
+        }
+
+        //messages are immutable, thus neighbours at the same revision share the same message
+        HashMap<Long, Message> messagesSinceRevision = new HashMap<>();
+        long timestamp = globalData.sendEvent();
+        for (int n = 0; n < numberOfNeighbours; n++) {
+            boolean fullSync = messagesSentToNeighbour[n] % FULL_SYNC_INTERVAL == 0;
+            Message message = messagesSinceRevision.computeIfAbsent(fullSync ? -1 : lastSentRevision[n],
+                    sinceRevision -> globalData.createMessage(getIndex(), timestamp, sinceRevision));
+            sendMessage(getNeighbour(n), message);
+            lastSentRevision[n] = globalData.getRevision();
+            messagesSentToNeighbour[n]++;
+        }
+    }
+
+    /**
+     * Finds an embedding within the resources given, and applies the {@link #embeddingBudgetPolicy} if the search
+     * stopped at its budget. Each search with a budget is counted in the statistics of the run: none for a repair that
+     * kept every assignment, both the repair and the full search for a repair that fell back.
+     *
+     * @param maximumResources the resources available on each server, at its index
+     * @param repair true to repair the current embedding, as after losing the elections most residual resources are
+     *               unchanged, false to search from scratch
+     * @return true if an embedding is found and can be used
+     * @see AssignmentVector#embedding(ResourceBundle[])
+     * @see AssignmentVector#repairEmbedding(ResourceBundle[])
+     */
+    private boolean embedding(ResourceBundle[] maximumResources, boolean repair) {
+        boolean found = repair ? assignments.repairEmbedding(maximumResources) : assignments.embedding(maximumResources);
+        if (!assignments.hasEmbeddingBudget()) { return found; }
+
+        //a repair that fell back ran two searches, each with its own budget
+        int exhaustedSearches = assignments.getLastNumberOfExhaustedSearches();
+        for (int search = 0; search < assignments.getLastNumberOfSearches(); search++) {
+            recordBudgetedSearch(search < exhaustedSearches);
+        }
+        boolean exhausted = assignments.isLastEmbeddingBudgetExhausted();
+        if (found && !embeddingBudgetPolicy.accept(true, exhausted)) {
+            assignments.clear();
+            return false;
+        }
+        return found;
+    }
+
+    /**
+     * Bounds the search for an embedding, to bound the time of each step of the distributed algorithm.
+     *
+     * @param maximumNodes the number of nodes of the search tree to visit per embedding, Long.MAX_VALUE for no limit
+     * @param maximumTimeInMilliseconds the time to search per embedding, Long.MAX_VALUE for no limit
+     * @param policy what to do when the budget is spent
+     * @see AssignmentVector#setEmbeddingBudget(long, long)
+     */
+    public void setEmbeddingBudget(long maximumNodes, long maximumTimeInMilliseconds, EmbeddingBudgetPolicy policy) {
+        assignments.setEmbeddingBudget(maximumNodes, maximumTimeInMilliseconds);
+        embeddingBudgetPolicy = policy;
+    }
+
+    /**
+     * @param maximum the number of possible assignments of the tasks kept for the embedding, those with the highest utility
+     * @see AssignmentVector#setMaximumCandidates(int)
+     */
+    public void setMaximumCandidates(int maximum) {
+        assignments.setMaximumCandidates(maximum);
     }
 
     @Override
     protected void initialize() {
-        if (!assignments.embedding(getResourceAvailableInServers())) {
+        if (!embedding(getResourceAvailableInServers(), false)) {
             LOGGER.info("{}: {}: Could not find suitable embedding at initialization.", getSimulation().clockStr(), getName());
             failed = true;
             ended = true;
         } else {
             voting();
             globalData.election();
-            broadcast(new Message(globalData, getIndex(), LocalTime.now()));
-            try{
-                //wait a short amount of time for the respective
-                TimeUnit.MILLISECONDS.sleep(TIME_TO_WAIT);
-            } catch(Exception e) {
-                e.printStackTrace();
-            }
+            broadcastGlobalData();
         }
     }
 
@@ -176,6 +248,12 @@ public class EdgeDeviceDragon extends DistributedApplication {
     @Override
     public void printResults() {
         LOGGER.info("Device (index = {}): total run time = {}, is_winner = {}", getIndex(), getRuntime(), !failed);
+        LOGGER.info("Device (index = {}): elections = {}, election time = {} ms, parallel rounds = {}", getIndex(),
+                globalData.getNumberOfElections(), globalData.getTotalElectionTimeInNanoseconds() / 1e6,
+                globalData.getTotalElectionParallelRounds());
+        LOGGER.info("Device (index = {}): embeddings = {}, embedding nodes = {}, repairs = {}, repair fallbacks = {}", getIndex(),
+                assignments.getNumberOfEmbeddings(), assignments.getTotalEmbeddingNodes(),
+                assignments.getNumberOfRepairs(), assignments.getNumberOfRepairFallbacks());
         HashMap<Server, ResourceBundle> resourceConsumption = getFinalResourcesConsumption();
         for (Server e: resourceConsumption.keySet()) {
             ResourceBundle consumption = resourceConsumption.get(e);
@@ -183,6 +261,14 @@ public class EdgeDeviceDragon extends DistributedApplication {
         }
     }
 
+    /**
+     * @return the minimum number of servers to elect at once for {@link GlobalData} to elect them in parallel
+     * @see DistSimManager#setParallelElectionThreshold(int)
+     */
+    int getParallelElectionThreshold() {
+        return getDistSimManager().getParallelElectionThreshold();
+    }
+
     @Override
     public HashMap<Server, ResourceBundle> getFinalResourcesConsumption() {
         HashMap<Server, ResourceBundle> result = new HashMap<>();
@@ -203,26 +289,28 @@ public class EdgeDeviceDragon extends DistributedApplication {
     @Override
     public void reset() {
         super.reset();
-        setIndex(-1);
-        neighbours.clear();
-        incomingMessages.flush(); //could be from previous distributed simulation run, thus clear all
+        lastSentRevision = new long[0];
+        messagesSentToNeighbour = new int[0];
+        if (inbox.length != incomingMessages.getCapacity()) {
+            inbox = new MessageInterface[incomingMessages.getCapacity()];
+        }
 //        failed = false;
 //        ended = false;
         assignments.clear();
-        globalData = new GlobalData(this, getDistSimManager().getNumParticipatingApplications());
-        getEdgeServers().forEach(e -> maxBidRatio.put(e, Double.MAX_VALUE));
+        globalData = new GlobalData(this, getDistSimManager().getNumberOfSlots());
+        Arrays.fill(maxBidRatio, Double.MAX_VALUE);
     }
 
     /**
      * For each edge server found in the simulation, get the resource available.
-     * @return each edge server mapped to their available resource
+     * @return the resource available on each edge server, at the {@link Server#getIndex() index} of the server
      *
-     * @see Server#getAvailableResources()
+     * @see #getCapacitySnapshot(Server)
      */
-    protected HashMap<Server, ResourceBundle> getResourceAvailableInServers() {
-        HashMap<Server, ResourceBundle> result = new HashMap<>();
+    protected ResourceBundle[] getResourceAvailableInServers() {
+        ResourceBundle[] result = new ResourceBundle[getNumberOfServers()];
         for (Server e: getEdgeServers()) {
-            result.put(e, e.getAvailableResources());
+            result[e.getIndex()] = getCapacitySnapshot(e).toResourceBundle();
         }
         return result;
     }
@@ -247,10 +335,11 @@ public class EdgeDeviceDragon extends DistributedApplication {
             if (totalPrivateUtility == 0) { continue; } //the device does not have any assignment on this server.
 
             //total resource demanded is a 3-dimensional vector, we have to normalise it to get a number
-            double normalisedResource = totalResourceDemanded.normalise(e.getAvailableResources());
+            double normalisedResource = getCapacitySnapshot(e).normalise(totalResourceDemanded.getCPU(),
+                    totalResourceDemanded.getBandwidth(), totalResourceDemanded.getMemory());
 
             double ratio = totalPrivateUtility/normalisedResource;
-            double maxBidRatioForServer = maxBidRatio.get(e);
+            double maxBidRatioForServer = maxBidRatio[e.getIndex()];
 
             //see "score" function for more information
             int vote = ratio < maxBidRatioForServer ? totalPrivateUtility : (int) (normalisedResource * maxBidRatioForServer);
@@ -262,12 +351,12 @@ public class EdgeDeviceDragon extends DistributedApplication {
     }
 
     /**
-     * @param electionResults each edge server mapped to their election result
+     * @param electionResults the election result of each edge server, at the index of the server
      * @return true if this edge device did not win in any election
      */
-    private boolean outvoted(HashMap<Server, Election> electionResults) {
-        for (Election result: electionResults.values()) {
-            if (result.getWinners().contains(getIndex())) { return false; }
+    private boolean outvoted(Election[] electionResults) {
+        for (Election result: electionResults) {
+            if (result != null && result.getWinners().get(getIndex())) { return false; }
         }
         return true;
     }
@@ -277,17 +366,19 @@ public class EdgeDeviceDragon extends DistributedApplication {
      * the available resources on the server minus the resource consumption of the winners of that election.
      *
      * <p>
-     *     The residual resources is then used in the {@link AssignmentVector#embedding(HashMap) embedding} algorithm
+     *     The residual resources is then used in the {@link AssignmentVector#embedding(ResourceBundle[]) embedding} algorithm
      *     to find an assignment that does not exceed the available resource on the server, taking into consideration the resources used
      *     by the current winners.
      * </p>
-     * @param electionResults each server mapped to their election result
-     * @return each server mapped to their election result's residual resources
+     * @param electionResults the election result of each server, at the index of the server
+     * @return the residual resources of the election result of each server, at the index of the server
      */
-    private HashMap<Server, ResourceBundle> getResidualResourcesFromElection(HashMap<Server, Election> electionResults) {
-        HashMap<Server, ResourceBundle> result = new HashMap<>();
-        for (Server e: electionResults.keySet()) {
-            result.put(e, electionResults.get(e).getResidualResources());
+    private ResourceBundle[] getResidualResourcesFromElection(Election[] electionResults) {
+        ResourceBundle[] result = new ResourceBundle[electionResults.length];
+        for (int e = 0; e < electionResults.length; e++) {
+            if (electionResults[e] != null) {
+                result[e] = electionResults[e].getResidualResources();
+            }
         }
 
         return result;
@@ -298,17 +389,17 @@ public class EdgeDeviceDragon extends DistributedApplication {
      *
      * We have to update it everytime we run an election so that we do not give a higher vote than before.
      * <p>See "score" function in the DRAGON paper.</p>*/
-    private void updateMaxBidRatio(HashMap<Server, Election> electionResults) {
+    private void updateMaxBidRatio(Election[] electionResults) {
         for (Server server : getEdgeServers()) {
             double smallestRatio = Double.MAX_VALUE;
-            Election electionResult = electionResults.get(server);
-            for (int winner: electionResult.getWinners()) {
-                double candidateSmallestRatio = globalData.getEdgeDeviceInformationForServer(winner, server).getVoteResourceRatio(server.getAvailableResources());
+            BitSet winners = electionResults[server.getIndex()].getWinners();
+            for (int winner = winners.nextSetBit(0); winner >= 0; winner = winners.nextSetBit(winner + 1)) {
+                double candidateSmallestRatio = globalData.getVoteResourceRatio(winner, server);
                 smallestRatio = Math.min(smallestRatio, candidateSmallestRatio);
             }
 
             if (smallestRatio < Double.MAX_VALUE) {
-                maxBidRatio.put(server, smallestRatio);
+                maxBidRatio[server.getIndex()] = smallestRatio;
             }
         }
     }
@@ -0,0 +1,215 @@
+package fazirul.fyp.dragon.dragonDevice;
+
+import fazirul.fyp.dragon.utils.InformationTable;
+import fazirul.fyp.elements.CapacitySnapshot;
+
+/**
+ * For each edge server, the edge devices that voted on it, ordered as in a single-node election of the DRAGON paper:
+ * by vote:resource ratio from highest to lowest, ties in order of index.
+ *
+ * <p>The devices of each server are kept in a primitive array in election order, so that an election is a loop over
+ * candidates that are already sorted. A changed entry is only marked as pending: before the next election on the server,
+ * the pending devices are removed in one pass, sorted among themselves and merged back. Thus m changes cost
+ * O(n + m log m) for n voters, however many elections or messages they come from. The ratios are computed against a
+ * {@link CapacitySnapshot} of each server, and are only all computed again when the version of the snapshot changes.</p>
+ */
+class ElectionIndex {
+    private final int numberOfDevices;
+
+    /**
+     * The vote:resource ratio of every entry, at the same index as in {@link GlobalData}'s table.
+     * Only meaningful for entries with a vote.
+     */
+    private final double[] ratios;
+
+    /**
+     * The capacity of each server against which its ratios were computed, null if not computed yet.
+     */
+    private final CapacitySnapshot[] capacities;
+
+    /**
+     * The devices with a vote on each server, in election order, in the first {@link #numberOfVoters} elements.
+     */
+    private final int[][] voters;
+    private final int[] numberOfVoters;
+
+    /**
+     * The devices of each server whose entry changed since the last {@link #refresh}, in the first
+     * {@link #numberOfPending} elements, and whether each entry is among them, at the same index as {@link #ratios}.
+     */
+    private final int[][] pending;
+    private final int[] numberOfPending;
+    private final boolean[] isPending;
+
+    /**
+     * Used to sort the pending devices. Shared by all the servers, as the index is never modified in parallel.
+     */
+    private final int[] buffer;
+
+    /**
+     * @param numberOfServers the number of edge servers
+     * @param numberOfDevices the number of edge devices
+     */
+    ElectionIndex(int numberOfServers, int numberOfDevices) {
+        this.numberOfDevices = numberOfDevices;
+        ratios = new double[numberOfServers * numberOfDevices];
+        capacities = new CapacitySnapshot[numberOfServers];
+        voters = new int[numberOfServers][numberOfDevices];
+        numberOfVoters = new int[numberOfServers];
+        pending = new int[numberOfServers][numberOfDevices];
+        numberOfPending = new int[numberOfServers];
+        isPending = new boolean[numberOfServers * numberOfDevices];
+        buffer = new int[numberOfDevices];
+    }
+
+    /**
+     * Brings the devices of a server in election order: computes all the ratios again if its capacity has changed since
+     * they were computed, otherwise merges the pending changes.
+     *
+     * @param s the index of the server
+     * @param capacity the current capacity of the server
+     * @param data the entries of every device on every server
+     */
+    void refresh(int s, CapacitySnapshot capacity, InformationTable data) {
+        if (capacities[s] != null && capacities[s].getVersion() == capacity.getVersion()) {
+            mergePending(s);
+            return;
+        }
+
+        capacities[s] = capacity;
+        int offset = s * numberOfDevices;
+        int[] serverVoters = voters[s];
+        int count = 0;
+        for (int d = 0; d < numberOfDevices; d++) {
+            isPending[offset + d] = false;
+            if (computeRatio(s, d, data)) {
+                serverVoters[count++] = d;
+            }
+        }
+        numberOfVoters[s] = count;
+        numberOfPending[s] = 0;
+
+        sort(s, serverVoters, new int[count], 0, count);
+    }
+
+    /**
+     * Removes the pending devices of a server from its voters in one pass, sorts those that still have a vote, and merges
+     * them back from the end, so that no element is moved more than once.
+     */
+    private void mergePending(int s) {
+        int count = numberOfPending[s];
+        if (count == 0) { return; }
+        int offset = s * numberOfDevices;
+        int[] serverVoters = voters[s];
+        int[] serverPending = pending[s];
+
+        int kept = 0;
+        for (int j = 0; j < numberOfVoters[s]; j++) {
+            int d = serverVoters[j];
+            if (!isPending[offset + d]) {
+                serverVoters[kept++] = d;
+            }
+        }
+
+        int added = 0;
+        for (int j = 0; j < count; j++) {
+            int d = serverPending[j];
+            isPending[offset + d] = false;
+            if (ratios[offset + d] > 0) {
+                serverPending[added++] = d;
+            }
+        }
+        numberOfPending[s] = 0;
+        sort(s, serverPending, buffer, 0, added);
+
+        int i = kept - 1;
+        int j = added - 1;
+        for (int k = kept + added - 1; j >= 0; k--) {
+            serverVoters[k] = i >= 0 && before(s, serverPending[j], serverVoters[i]) ? serverVoters[i--] : serverPending[j--];
+        }
+        numberOfVoters[s] = kept + added;
+    }
+
+    /**
+     * Called after the entry of a device on a server has changed. Its ratio is computed again, and it is marked as
+     * pending, to be moved to its new position by the next {@link #refresh}.
+     *
+     * @param s the index of the server
+     * @param d the index of the device
+     * @param data the entries, including the change
+     */
+    void update(int s, int d, InformationTable data) {
+        if (capacities[s] == null) { return; } //computed by the first refresh
+        int k = s * numberOfDevices + d;
+        if (!computeRatio(s, d, data)) {
+            ratios[k] = 0;
+        }
+        if (!isPending[k]) {
+            isPending[k] = true;
+            pending[s][numberOfPending[s]++] = d;
+        }
+    }
+
+    /**
+     * @return true if the device has a vote on the server, in which case its ratio is computed. A vote gives a positive ratio.
+     */
+    private boolean computeRatio(int s, int d, InformationTable data) {
+        int k = s * numberOfDevices + d;
+        if (data.getVote(k) <= 0) { return false; }
+        ratios[k] = data.getVote(k) / capacities[s].normalise(data.getCPU(k), data.getBandwidth(k), data.getMemory(k));
+        return true;
+    }
+
+    /**
+     * @return true if device a comes before device b in the election on the server: higher ratio first, ties in order of index
+     */
+    private boolean before(int s, int a, int b) {
+        int offset = s * numberOfDevices;
+        int byRatio = Double.compare(-ratios[offset + a], -ratios[offset + b]);
+        return byRatio != 0 ? byRatio < 0 : a < b;
+    }
+
+    /**
+     * Sorts devices[from, to) in election order (merge sort).
+     */
+    private void sort(int s, int[] devices, int[] buffer, int from, int to) {
+        if (to - from < 2) { return; }
+        int middle = (from + to) >>> 1;
+        sort(s, devices, buffer, from, middle);
+        sort(s, devices, buffer, middle, to);
+        if (!before(s, devices[middle], devices[middle - 1])) { return; } //already in order
+
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            buffer[k] = j == to || (i < middle && !before(s, devices[j], devices[i])) ? devices[i++] : devices[j++];
+        }
+        System.arraycopy(buffer, from, devices, from, to - from);
+    }
+
+    /**
+     * @param s the index of the server
+     * @return the devices with a vote on the server, in election order, in the first {@link #getNumberOfVoters(int)}
+     * elements, as of the last {@link #refresh}. Must not be modified, and only valid until the next refresh.
+     */
+    int[] getVoters(int s) {
+        return voters[s];
+    }
+
+    /**
+     * @param s the index of the server
+     * @return the number of devices with a vote on the server
+     */
+    int getNumberOfVoters(int s) {
+        return numberOfVoters[s];
+    }
+
+    /**
+     * @param s the index of the server
+     * @param d the index of the device
+     * @return the vote:resource ratio of the device on the server, as of the last {@link #refresh} or {@link #update}
+     */
+    double getRatio(int s, int d) {
+        return ratios[s * numberOfDevices + d];
+    }
+}
@@ -0,0 +1,27 @@
+package fazirul.fyp.dragon.dragonDevice;
+
+/**
+ * What an {@link EdgeDeviceDragon} does when the search for an embedding stops at its budget.
+ *
+ * @see EdgeDeviceDragon#setEmbeddingBudget(long, long, EmbeddingBudgetPolicy)
+ */
+public enum EmbeddingBudgetPolicy {
+    /**
+     * The device fails, as if there was no embedding, even if one was found before the budget was spent.
+     */
+    FAIL,
+
+    /**
+     * The device uses the best embedding found before the budget was spent, and only fails if none was found.
+     */
+    BEST_SO_FAR;
+
+    /**
+     * @param found true if an embedding was found
+     * @param budgetExhausted true if the search stopped at its budget
+     * @return true if the device can use the embedding found
+     */
+    public boolean accept(boolean found, boolean budgetExhausted) {
+        return found && (this == BEST_SO_FAR || !budgetExhausted);
+    }
+}
@@ -0,0 +1,380 @@
+package fazirul.fyp.dragon.dragonDevice;
+
+import fazirul.fyp.dragon.utils.TaskAssignment;
+import fazirul.fyp.dragon.utils.VirtualMachineHandler;
+import fazirul.fyp.elements.ResourceBatch;
+import fazirul.fyp.elements.ResourceBundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the embedding of an {@link AssignmentVector}: one possible assignment per task, with the highest total private
+ * utility, such that the resources demanded on each server are bounded by the resources given. This is a
+ * multi-dimensional knapsack with one choice per task, solved by branch and bound:
+ * <ul>
+ *     <li>Tasks are decided one at a time, those with the fewest possible assignments first. Each tries its possible
+ *     assignments from the highest to the lowest utility.</li>
+ *     <li>Within a task, a possible assignment is dropped if another one on the same server demands no more of any
+ *     resource and has at least the same utility, as it can always replace it.</li>
+ *     <li>Before any search, the sum over the tasks of their minimum demand of each resource must fit within the sum of
+ *     the resources given.</li>
+ *     <li>At each node, every task left must have a possible assignment that fits the residual resources of its server.
+ *     The sum of the highest utility among those is an upper bound of the utility left, and the branch is cut when it
+ *     cannot improve on the best embedding found so far.</li>
+ * </ul>
+ * Among embeddings with the same total utility, the first one found in this order is kept.
+ *
+ * <p>The search can be given a budget of nodes and of time per call. Once the budget is spent, the search stops and
+ * returns the best embedding found so far, which is then not proven to be the best one.</p>
+ */
+class EmbeddingSolver {
+    private final int numberOfTasks;
+
+    /**
+     * The possible assignments of each task, from the highest to the lowest utility, without the dominated ones.
+     */
+    private final TaskAssignment[][] candidates;
+
+    /**
+     * The resources demanded by the possible assignments of each task, in the same order as {@link #candidates}.
+     */
+    private final ResourceBatch[] demands;
+
+    /**
+     * The server index and the utility of the possible assignments of each task, in the same order as {@link #candidates}.
+     */
+    private final int[][] servers;
+    private final int[][] utilities;
+
+    /**
+     * The minimum demand of each resource by each task, over its possible assignments.
+     */
+    private final int[][] minimumDemands;
+
+    /**
+     * The tasks in the order they are decided.
+     */
+    private final int[] order;
+
+    //state of the current search
+    private final int[] active;
+    private int numberOfActive;
+
+    /**
+     * At k, the sum of the highest utility of the tasks active[k] onwards, whether or not their assignments fit. Cuts
+     * branches without checking the residual resources, as done by {@link #upperBound(int)}.
+     */
+    private final int[] suffixMaximumUtility;
+    private int[][] residual;
+    private final int[] choice;
+    private int[] best;
+    private int bestUtility;
+    private int rootBound;
+
+    private long nodes;
+    private long boundPrunes;
+    private long infeasiblePrunes;
+    private boolean budgetExhausted;
+
+    /**
+     * The time is only checked every this many nodes, as reading the clock costs more than a node.
+     */
+    private static final int NODES_PER_TIME_CHECK = 256;
+
+    private long nodeBudget = Long.MAX_VALUE;
+    private long timeBudgetInNanoseconds = Long.MAX_VALUE;
+    private long deadline;
+
+    /**
+     * @param possibleAssignments the possible assignments, from the highest to the lowest utility
+     * @param numberOfTasks the number of tasks, each possible assignment is of a task lower than this
+     * @param vmHandler the handler of the resources demanded by each virtual machine
+     */
+    EmbeddingSolver(List<TaskAssignment> possibleAssignments, int numberOfTasks, VirtualMachineHandler vmHandler) {
+        this.numberOfTasks = numberOfTasks;
+        List<List<TaskAssignment>> byTask = new ArrayList<>();
+        for (int task = 0; task < numberOfTasks; task++) {
+            byTask.add(new ArrayList<>());
+        }
+        for (TaskAssignment t: possibleAssignments) {
+            List<TaskAssignment> taskCandidates = byTask.get(t.getTaskID());
+            if (!isDominated(t, taskCandidates, vmHandler)) {
+                taskCandidates.add(t);
+            }
+        }
+
+        candidates = new TaskAssignment[numberOfTasks][];
+        demands = new ResourceBatch[numberOfTasks];
+        servers = new int[numberOfTasks][];
+        utilities = new int[numberOfTasks][];
+        minimumDemands = new int[numberOfTasks][];
+        for (int task = 0; task < numberOfTasks; task++) {
+            List<TaskAssignment> taskCandidates = byTask.get(task);
+            candidates[task] = taskCandidates.toArray(new TaskAssignment[0]);
+            demands[task] = new ResourceBatch(taskCandidates.size());
+            servers[task] = new int[taskCandidates.size()];
+            utilities[task] = new int[taskCandidates.size()];
+            minimumDemands[task] = new int[ResourceBatch.RESOURCE_BUNDLE_DIMENSIONS];
+            Arrays.fill(minimumDemands[task], Integer.MAX_VALUE);
+            for (int c = 0; c < taskCandidates.size(); c++) {
+                TaskAssignment t = taskCandidates.get(c);
+                int[] demand = ResourceBatch.toArray(vmHandler.getVmResourceUsage(t.getVirtualMachineID()));
+                demands[task].add(demand);
+                servers[task][c] = t.getServer().getIndex();
+                utilities[task][c] = t.getPrivateUtility();
+                for (int r = 0; r < demand.length; r++) {
+                    minimumDemands[task][r] = Math.min(minimumDemands[task][r], demand[r]);
+                }
+            }
+        }
+
+        order = new int[numberOfTasks];
+        Integer[] tasks = new Integer[numberOfTasks];
+        for (int task = 0; task < numberOfTasks; task++) {
+            tasks[task] = task;
+        }
+        Arrays.sort(tasks, Comparator.comparingInt((Integer task) -> candidates[task].length).thenComparingInt(task -> task));
+        for (int k = 0; k < numberOfTasks; k++) {
+            order[k] = tasks[k];
+        }
+        choice = new int[numberOfTasks];
+        active = new int[numberOfTasks];
+        suffixMaximumUtility = new int[numberOfTasks + 1];
+    }
+
+    /**
+     * @param t a possible assignment
+     * @param taskCandidates the possible assignments of the same task kept so far, with at least the same utility
+     * @return true if one of them is on the same server and demands no more of any resource
+     */
+    private static boolean isDominated(TaskAssignment t, List<TaskAssignment> taskCandidates, VirtualMachineHandler vmHandler) {
+        ResourceBundle demand = vmHandler.getVmResourceUsage(t.getVirtualMachineID());
+        for (TaskAssignment other: taskCandidates) {
+            if (other.getServer() == t.getServer() && demand.isBounded(vmHandler.getVmResourceUsage(other.getVirtualMachineID()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param maximumNodes the number of nodes of the search tree that a call to {@link #solve(ResourceBundle[])} may
+     *                     visit, Long.MAX_VALUE for no limit
+     * @param maximumTimeInNanoseconds the wall clock time that a call may take, Long.MAX_VALUE for no limit
+     */
+    void setBudget(long maximumNodes, long maximumTimeInNanoseconds) {
+        nodeBudget = maximumNodes;
+        timeBudgetInNanoseconds = maximumTimeInNanoseconds;
+    }
+
+    /**
+     * @return true if a call to {@link #solve(ResourceBundle[])} can stop before the search is complete
+     */
+    boolean hasBudget() {
+        return nodeBudget != Long.MAX_VALUE || timeBudgetInNanoseconds != Long.MAX_VALUE;
+    }
+
+    /**
+     * Finds the embedding with the highest total utility, or the best one found within the budget.
+     *
+     * @param maximumResources the resources that can be demanded on each server, at its index. Not modified.
+     * @return the possible assignment chosen for each task, null if there is no embedding or none was found within the
+     * budget
+     * @see #isBudgetExhausted()
+     */
+    TaskAssignment[] solve(ResourceBundle[] maximumResources) {
+        BitSet tasks = new BitSet(numberOfTasks);
+        tasks.set(0, numberOfTasks);
+        return solve(maximumResources, tasks);
+    }
+
+    /**
+     * Finds the assignments of some of the tasks with the highest total utility, or the best ones found within the
+     * budget, e.g. to repair an embedding where the other tasks keep their assignments.
+     *
+     * @param maximumResources the resources that can be demanded on each server by the tasks given, at its index. Not modified.
+     * @param tasks the tasks to assign
+     * @return the possible assignment chosen for each task given, null for the other tasks, or null if there are no
+     * such assignments or none were found within the budget
+     * @see #isBudgetExhausted()
+     */
+    TaskAssignment[] solve(ResourceBundle[] maximumResources, BitSet tasks) {
+        numberOfActive = 0;
+        for (int task: order) {
+            if (tasks.get(task)) {
+                active[numberOfActive++] = task;
+            }
+        }
+
+        nodes = 0;
+        boundPrunes = 0;
+        infeasiblePrunes = 0;
+        budgetExhausted = false;
+        deadline = timeBudgetInNanoseconds == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeBudgetInNanoseconds;
+        best = null;
+        bestUtility = -1;
+
+        residual = new int[maximumResources.length][];
+        int[] totalResidual = new int[ResourceBatch.RESOURCE_BUNDLE_DIMENSIONS];
+        for (int s = 0; s < maximumResources.length; s++) {
+            residual[s] = maximumResources[s] == null ? new int[ResourceBatch.RESOURCE_BUNDLE_DIMENSIONS]
+                    : ResourceBatch.toArray(maximumResources[s]);
+            for (int r = 0; r < totalResidual.length; r++) {
+                totalResidual[r] += residual[s][r];
+            }
+        }
+
+        //the tasks cannot all fit, whatever the servers chosen
+        int[] totalMinimumDemand = new int[ResourceBatch.RESOURCE_BUNDLE_DIMENSIONS];
+        for (int k = 0; k < numberOfActive; k++) {
+            int task = active[k];
+            if (candidates[task].length == 0) { return null; }
+            for (int r = 0; r < totalMinimumDemand.length; r++) {
+                totalMinimumDemand[r] += minimumDemands[task][r];
+            }
+        }
+        for (int r = 0; r < totalMinimumDemand.length; r++) {
+            if (totalMinimumDemand[r] > totalResidual[r]) { return null; }
+        }
+
+        suffixMaximumUtility[numberOfActive] = 0;
+        for (int k = numberOfActive - 1; k >= 0; k--) {
+            suffixMaximumUtility[k] = suffixMaximumUtility[k + 1] + utilities[active[k]][0];
+        }
+
+        rootBound = upperBound(0);
+        if (rootBound < 0) {
+            nodes++;
+            infeasiblePrunes++;
+            return null;
+        }
+        search(0, 0);
+
+        if (best == null) { return null; }
+        TaskAssignment[] result = new TaskAssignment[numberOfTasks];
+        for (int k = 0; k < numberOfActive; k++) {
+            result[active[k]] = candidates[active[k]][best[active[k]]];
+        }
+        return result;
+    }
+
+    /**
+     * @param k the number of tasks decided
+     * @param utility the total utility of the tasks decided
+     * @return true to stop the search: once an embedding reaching the utility of {@link #upperBound(int)} at the root is
+     * found, as no embedding can do better, or once the budget is spent
+     */
+    private boolean search(int k, int utility) {
+        if (nodes >= nodeBudget || (nodes % NODES_PER_TIME_CHECK == 0 && System.nanoTime() >= deadline)) {
+            budgetExhausted = true;
+            return true;
+        }
+        nodes++;
+        if (k == numberOfActive) {
+            if (utility > bestUtility) {
+                bestUtility = utility;
+                best = choice.clone();
+            }
+            return bestUtility == rootBound;
+        }
+
+        if (utility + suffixMaximumUtility[k] <= bestUtility) {
+            boundPrunes++;
+            return false;
+        }
+
+        int bound = upperBound(k);
+        if (bound < 0) {
+            infeasiblePrunes++;
+            return false;
+        }
+        if (utility + bound <= bestUtility) {
+            boundPrunes++;
+            return false;
+        }
+
+        int task = active[k];
+        int boundOfOthers = bound - maximumUtility(task);
+        ResourceBatch taskDemands = demands[task];
+        for (int c = 0; c < candidates[task].length; c++) {
+            //possible assignments are sorted by utility, thus the following ones cannot do better either
+            if (utility + utilities[task][c] + boundOfOthers <= bestUtility) {
+                boundPrunes++;
+                break;
+            }
+
+            int[] serverResidual = residual[servers[task][c]];
+            if (!taskDemands.fits(c, serverResidual)) { continue; }
+
+            taskDemands.deduct(c, serverResidual);
+            choice[task] = c;
+            boolean stop = search(k + 1, utility + utilities[task][c]);
+            taskDemands.release(c, serverResidual);
+            if (stop) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @param task a task
+     * @return the highest utility of the possible assignments of the task that fit in the residual resources, -1 if none
+     */
+    private int maximumUtility(int task) {
+        ResourceBatch taskDemands = demands[task];
+        for (int c = 0; c < candidates[task].length; c++) {
+            if (taskDemands.fits(c, residual[servers[task][c]])) {
+                return utilities[task][c];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param k the number of tasks decided
+     * @return the sum over the tasks left of {@link #maximumUtility(int)}, -1 if one of them has no possible assignment
+     * that fits
+     */
+    private int upperBound(int k) {
+        int bound = 0;
+        for (int j = k; j < numberOfActive; j++) {
+            int utility = maximumUtility(active[j]);
+            if (utility < 0) { return -1; }
+            bound += utility;
+        }
+        return bound;
+    }
+
+    /**
+     * @return true if the last {@link #solve(ResourceBundle[])} stopped at its budget, thus its result is not proven to be
+     * the best embedding, and null does not mean that there is none
+     */
+    boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    /**
+     * @return the number of nodes of the search tree visited by the last {@link #solve(ResourceBundle[])}
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of branches cut by the utility bound during the last {@link #solve(ResourceBundle[])}
+     */
+    long getBoundPrunes() {
+        return boundPrunes;
+    }
+
+    /**
+     * @return the number of branches cut as a task left had no possible assignment that fits, during the last
+     * {@link #solve(ResourceBundle[])}
+     */
+    long getInfeasiblePrunes() {
+        return infeasiblePrunes;
+    }
+}
@@ -1,25 +1,59 @@
 package fazirul.fyp.dragon.dragonDevice;
 
-import fazirul.fyp.dragon.utils.EdgeDeviceInformation;
 import fazirul.fyp.dragon.utils.Election;
+import fazirul.fyp.dragon.utils.InformationTable;
 import fazirul.fyp.dragon.utils.Message;
+import fazirul.fyp.elements.CapacitySnapshot;
+import fazirul.fyp.elements.ResourceBatch;
 import fazirul.fyp.elements.Server;
 import fazirul.fyp.elements.ResourceBundle;
 
-import java.time.LocalTime;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * The data that an edge device maintains on other edge devices. There is one instance such data for each edge device.
  */
 public class GlobalData {
     /**
-     * For each edge server, we maintain a list of {@link EdgeDeviceInformation information} on other edge devices (i.e. vote, resource, voting time).
-     * Since each edge device has an assigned index, we can grab the information of a particular edge device using this index.
+     * The edge servers, in order of {@link Server#getIndex() index}. The position of a server in this array is its row in {@link #data}.
+     */
+    private final Server[] servers;
+
+    /**
+     * The row in {@link #data} of each server, at the {@link Server#getIndex() index} of the server. -1 if the edge device
+     * does not use the server.
+     */
+    private final int[] rowOfServer;
+
+    /**
+     * The number of edge devices, i.e. the number of entries per server in {@link #data}.
+     */
+    private final int numberOfDevices;
+
+    /**
+     * For each edge server, we maintain the information of other edge devices (i.e. vote, resource, voting time).
+     * Since each edge device has an assigned index, we can grab the information of a particular edge device on a particular
+     * server at index {@code serverIndex * numberOfDevices + edgeDeviceIndex}.
+     *
+     * <p>The table is copied before it is written to if it has been {@link #published} in a message (copy-on-write).
+     * Thus, messages can share the table with this GlobalData instead of copying it. The copy shares the page of each
+     * server, and only copies the page of a server when first written to.</p>
      *
      * @see EdgeDeviceDragon#getIndex()
+     * @see #set(int, int, int, int, int, long)
+     */
+    private InformationTable data;
+
+    /**
+     * True if {@link #data} is referenced by a message sent. It must be copied before the next write.
+     */
+    private boolean published = false;
+
+    /**
+     * The devices that voted on each server, in election order. Updated on every change to {@link #data}.
      */
-    private final HashMap<Server, List<EdgeDeviceInformation>> data = new HashMap<>();
+    private final ElectionIndex electionIndex;
 
     /**
      * The edge device that this GlobalData belongs to.
@@ -28,37 +62,99 @@ public class GlobalData {
 
 
     /**
-     * The winners of the most recently computed election.
+     * The winners of the most recently computed election on each server, at the server index.
+     * Never modified after the election, as messages share them.
+     */
+    private final BitSet[] electionWinners;
+
+    /**
+     * The {@link Election#getWinnersFingerprint() fingerprint} of the winners on each server, at the server index.
+     * Replaced (not modified) after each election, as messages share it.
+     */
+    private long[] electionWinnersFingerprints;
+
+    /**
+     * Incremented on every change to an entry in {@link #data}.
+     * Used to find the entries that changed since a message was last sent to a neighbour.
+     *
+     * @see #createMessage(int, long, long)
+     */
+    private long revision = 0;
+
+    /**
+     * The minimum number of servers to elect at once for the elections to run in parallel.
+     * @see #electServers(Election[], int[], int, BitSet)
+     */
+    private final int parallelElectionThreshold;
+
+    /**
+     * The Lamport clock of this edge device. Advanced on every local change to {@link #data} and on every message sent,
+     * and moved past the clock of every message received.
+     */
+    private long clock = 0;
+
+    /**
+     * Number of low bits of a version holding the index of the edge device that made the change.
+     * Ties between changes at the same clock are broken by this index, so that every device orders changes the same way.
+     */
+    private static final int WRITER_BITS = 24;
+
+    /**
+     * Counters of the most recent election.
+     * @see #getLastElectionIterations()
+     * @see #getLastElectionServersRecomputed()
+     */
+    private int lastElectionIterations = 0;
+    private int lastElectionServersRecomputed = 0;
+    private int lastElectionParallelRounds = 0;
+    private long lastElectionTimeInNanoseconds = 0;
+    private int numberOfElections = 0;
+    private long totalElectionTimeInNanoseconds = 0;
+    private int totalElectionParallelRounds = 0;
+
+    /**
+     * The {@link #revision} at which each entry in {@link #data} was last changed, at the same index.
      */
-    private final HashMap<Server, HashSet<Integer>> electionWinners = new HashMap<>();
+    private final long[] entryRevisions;
 
     /**
      * @param edgeDevice the edge device that is maintaining such information
-     * @param sizeOfNetwork the total number of edge devices participating in the distributed algorithm.
+     * @param sizeOfNetwork the number of slots for edge devices participating in the distributed algorithm (see {@link fazirul.fyp.elements.DistSimManager#getNumberOfSlots()}).
      */
     public GlobalData(EdgeDeviceDragon edgeDevice, int sizeOfNetwork) {
         this.edgeDevice = edgeDevice;
-        HashSet<Server> servers = edgeDevice.getEdgeServers();
-        for (Server e: servers) {
-            List<EdgeDeviceInformation> deviceInformations = new ArrayList<>();
-            for (int i = 0; i < sizeOfNetwork; i++) {
-                deviceInformations.add(new EdgeDeviceInformation(i));
-            }
-            data.put(e, deviceInformations);
-
-            electionWinners.put(e, new HashSet<>()); // initialize election winners to be null.
+        this.numberOfDevices = sizeOfNetwork;
+        servers = edgeDevice.getEdgeServers().toArray(new Server[0]);
+        rowOfServer = new int[edgeDevice.getNumberOfServers()];
+        Arrays.fill(rowOfServer, -1);
+        electionWinners = new BitSet[servers.length];
+        electionWinnersFingerprints = new long[servers.length];
+        for (int s = 0; s < servers.length; s++) {
+            rowOfServer[servers[s].getIndex()] = s;
+            electionWinners[s] = new BitSet(); // initialize election winners to be empty.
         }
+
+        //every entry starts without vote or resource
+        data = InformationTable.dense(servers.length, sizeOfNetwork);
+        entryRevisions = new long[servers.length * sizeOfNetwork];
+        electionIndex = new ElectionIndex(servers.length, sizeOfNetwork);
+        parallelElectionThreshold = edgeDevice.getParallelElectionThreshold();
     }
 
     /**
      * Performs the multi-node election routine as specified in the DRAGON paper.
-     * @return Election results in each edge server
+     * @return Election results in each edge server, at the {@link Server#getIndex() index} of the server
      */
-    protected HashMap<Server, Election> election() {
-        HashMap<Server, Election> results = election(new HashSet<>());
-        for (Server e: results.keySet()) {
-            electionWinners.put(e, new HashSet<>(results.get(e).getWinners())); //update the winners
+    protected Election[] election() {
+        Election[] rows = election(new BitSet());
+        Election[] results = new Election[rowOfServer.length];
+        long[] fingerprints = new long[servers.length];
+        for (int s = 0; s < servers.length; s++) {
+            electionWinners[s] = (BitSet) rows[s].getWinners().clone(); //update the winners. Never modified afterwards, as messages share them
+            fingerprints[s] = rows[s].getWinnersFingerprint();
+            results[servers[s].getIndex()] = rows[s];
         }
+        electionWinnersFingerprints = fingerprints;
 
         return results;
     }
@@ -66,67 +162,166 @@ public class GlobalData {
     /**
      * The main logic behind the election routine. See DRAGON paper for more information.
      *
-     * <p>It is a recursive procedure, but can also be implemented iteratively.</p>
+     * <p>Elections are run on every server, then false winners are blacklisted one at a time until there is none left.
+     * Blacklisting a device only changes the elections of the servers it voted on, thus only those servers are
+     * elected again, and the results of the others are reused.</p>
      * @param blacklistedDevices the devices that we don't take into consideration to resolve election-conflicts.
-     * @return Election results in each edge server
+     * @return Election results in each edge server, at the row of the server
      */
-    private HashMap<Server, Election> election(HashSet<Integer> blacklistedDevices) {
-        HashMap<Server, Election> electionResults = new HashMap<>();
+    private Election[] election(BitSet blacklistedDevices) {
+        long startTime = System.nanoTime();
+        Election[] electionResults = new Election[servers.length];
+        lastElectionIterations = 0;
+        lastElectionServersRecomputed = 0;
+        lastElectionParallelRounds = 0;
 
         //perform election for all servers
-        for (Server e: edgeDevice.getEdgeServers()) {
-            electionResults.put(e, singleServerElection(e, blacklistedDevices));
+        int[] rows = new int[servers.length];
+        for (int s = 0; s < servers.length; s++) {
+            rows[s] = s;
         }
+        electServers(electionResults, rows, servers.length, blacklistedDevices);
 
         int nextFalseWinner = computeNextFalseWinner(electionResults);
-        //base case: when there are no more false winners
-        if (nextFalseWinner == -1) {
-            //release all the votes held by the losers
-            for (Server server : electionResults.keySet()) {
-                HashSet<Integer> losers = electionResults.get(server).getLosers();
-                for (int loser: losers) {
-                    EdgeDeviceInformation loserInfo = data.get(server).get(loser);
-                    loserInfo.setVote(0);
-                    loserInfo.setResource(new ResourceBundle(0,0,0));
-                    loserInfo.setTimestamp(LocalTime.now());
-                }
+        while (nextFalseWinner != -1) {
+            lastElectionIterations++;
+            blacklistedDevices.set(nextFalseWinner);
+            int count = 0;
+            for (int s = 0; s < servers.length; s++) {
+                if (data.getVote(index(s, nextFalseWinner)) <= 0) { continue; } //neither won nor lost on this server
+                rows[count++] = s;
             }
-            return electionResults;
+            electServers(electionResults, rows, count, blacklistedDevices);
+            lastElectionServersRecomputed += count;
+            nextFalseWinner = computeNextFalseWinner(electionResults);
+        }
+        lastElectionTimeInNanoseconds = System.nanoTime() - startTime;
+        numberOfElections++;
+        totalElectionTimeInNanoseconds += lastElectionTimeInNanoseconds;
+        totalElectionParallelRounds += lastElectionParallelRounds;
+
+        //no more false winners: release all the votes held by the losers
+        long version = localEvent();
+        for (int s = 0; s < servers.length; s++) {
+            BitSet losers = electionResults[s].getLosers();
+            for (int loser = losers.nextSetBit(0); loser >= 0; loser = losers.nextSetBit(loser + 1)) {
+                set(index(s, loser), 0, 0, 0, 0, version);
+            }
+        }
+        return electionResults;
+    }
+
+    /**
+     * Runs the single-server elections of the given servers, and stores each result at the row of its server.
+     * Each election only reads the entries of its own server and the blacklist, thus if there are at least
+     * {@link #parallelElectionThreshold} servers, they are run in parallel on the common ForkJoinPool. The results do not
+     * depend on whether they were run in parallel.
+     *
+     * @param electionResults the results, at the row of each server
+     * @param rows the rows of the servers to elect
+     * @param count the number of servers in rows
+     * @param blacklistedDevices the devices that we don't take into consideration, not modified
+     */
+    private void electServers(Election[] electionResults, int[] rows, int count, BitSet blacklistedDevices) {
+        for (int j = 0; j < count; j++) {
+            electionIndex.refresh(rows[j], edgeDevice.getCapacitySnapshot(servers[rows[j]]), data); //modifies the index, thus never in parallel
+        }
+
+        if (count < parallelElectionThreshold) {
+            for (int j = 0; j < count; j++) {
+                electionResults[rows[j]] = singleServerElection(rows[j], blacklistedDevices);
+            }
+            return;
         }
 
-        blacklistedDevices.add(nextFalseWinner);
-        return election(blacklistedDevices);
+        lastElectionParallelRounds++;
+        IntStream.range(0, count).parallel().forEach(j ->
+                electionResults[rows[j]] = singleServerElection(rows[j], blacklistedDevices));
+    }
+
+    /**
+     * @return the number of false winners blacklisted during the most recent {@link #election()}
+     */
+    public int getLastElectionIterations() {
+        return lastElectionIterations;
+    }
+
+    /**
+     * @return the number of single-server elections run again after blacklisting false winners, during the most recent
+     * {@link #election()}. Without reuse, this would be {@link #getLastElectionIterations()} times the number of servers.
+     */
+    public int getLastElectionServersRecomputed() {
+        return lastElectionServersRecomputed;
+    }
+
+    /**
+     * @return the time taken by the most recent {@link #election()}, excluding the release of the votes of the losers
+     */
+    public long getLastElectionTimeInNanoseconds() {
+        return lastElectionTimeInNanoseconds;
+    }
+
+    /**
+     * @return the number of times servers were elected in parallel during the most recent {@link #election()}
+     * @see #electServers(Election[], int[], int, BitSet)
+     */
+    public int getLastElectionParallelRounds() {
+        return lastElectionParallelRounds;
+    }
+
+    /**
+     * @return the number of calls to {@link #election()} so far
+     */
+    public int getNumberOfElections() {
+        return numberOfElections;
+    }
+
+    /**
+     * @return the sum of {@link #getLastElectionTimeInNanoseconds()} over every election so far
+     */
+    public long getTotalElectionTimeInNanoseconds() {
+        return totalElectionTimeInNanoseconds;
+    }
+
+    /**
+     * @return the sum of {@link #getLastElectionParallelRounds()} over every election so far
+     */
+    public int getTotalElectionParallelRounds() {
+        return totalElectionParallelRounds;
     }
 
     /**
      * Performs single-node election on an edge server.
-     * @param e the edge server to perform election on
+     * The {@link #electionIndex} must have been refreshed for the server.
+     * @param s the index of the edge server to perform election on
      * @param blacklistedDevices A set of edge devices that will not be considered during election.
      * @return The results of the {@link Election}
      */
-    private Election singleServerElection(Server e, HashSet<Integer> blacklistedDevices) {
+    private Election singleServerElection(int s, BitSet blacklistedDevices) {
+        CapacitySnapshot capacity = edgeDevice.getCapacitySnapshot(servers[s]);
         Election electionResult = new Election();
-        electionResult.addToResidualResources(e.getAvailableResources()); //eventually, the residual resources will decrease as we add winners
+        int[] residual = capacity.toArray(); //eventually, the residual resources will decrease as we add winners
 
-        List<EdgeDeviceInformation> sortedEdgeDeviceInformation = new ArrayList<>(data.get(e)); //first create a copy as we do not want the original list to be modified
-        sortedEdgeDeviceInformation.sort(Comparator.comparingDouble(device ->
-                -device.getVoteResourceRatio(e.getAvailableResources()))); //then sort based on vote:resource ratio
+        //only devices that voted take part, already sorted based on vote:resource ratio (ties in order of index)
+        int[] voters = electionIndex.getVoters(s);
+        int numberOfVoters = electionIndex.getNumberOfVoters(s);
+        ResourceBatch demands = data.getResources(s); //at the index of each device
 
-        for (EdgeDeviceInformation edi: sortedEdgeDeviceInformation) {
-            if (edi.getVote() == 0) { break; }
-            if (blacklistedDevices.contains(edi.getEdgeDeviceID()) ||
-                    !electionResult.getResidualResources().isBounded(edi.getResource())) { continue; }
+        for (int j = 0; j < numberOfVoters; j++) {
+            int d = voters[j];
+            if (blacklistedDevices.get(d) || !demands.fits(d, residual)) { continue; }
 
             //device is not blacklisted & there is enough resources remaining --> it's a winner for this node
-            electionResult.removeFromResidualResources(edi.getResource());
-            electionResult.addWinner(edi.getEdgeDeviceID());
+            demands.deduct(d, residual);
+            electionResult.addWinner(d);
         }
+        electionResult.addToResidualResources(ResourceBatch.toResourceBundle(residual));
 
         //losers are those that voted but did not win
-        for (EdgeDeviceInformation edi: sortedEdgeDeviceInformation) {
-            if (edi.getVote() == 0) { break; }
-            if (!electionResult.getWinners().contains(edi.getEdgeDeviceID()) && edi.getVote() > 0) {
-                electionResult.addLoser(edi.getEdgeDeviceID());
+        for (int j = 0; j < numberOfVoters; j++) {
+            int d = voters[j];
+            if (!electionResult.getWinners().get(d)) {
+                electionResult.addLoser(d);
             }
         }
 
@@ -144,21 +339,21 @@ public class GlobalData {
      *     <li>If there is a further tie, select any of the candidates to be the next false winner.</li>
      * </ul>
      * </p>
-     * @param electionResults the election results
+     * @param electionResults the election results, at the row of each server
      * @return the index of the false winner
      */
-    private int computeNextFalseWinner(HashMap<Server, Election> electionResults) {
-        HashSet<Integer> overallWinners = new HashSet<>();
-        HashSet<Integer> overallLosers = new HashSet<>();
+    private int computeNextFalseWinner(Election[] electionResults) {
+        BitSet overallWinners = new BitSet();
+        BitSet overallLosers = new BitSet();
 
-        for (Election serverElection: electionResults.values()) {
-            overallWinners.addAll(serverElection.getWinners());
-            overallLosers.addAll(serverElection.getLosers());
+        for (Election serverElection: electionResults) {
+            overallWinners.or(serverElection.getWinners());
+            overallLosers.or(serverElection.getLosers());
         }
 
         //possible false winners are those who won some and lost some
-        HashSet<Integer> possibleFalseWinners = new HashSet<>(overallWinners);
-        possibleFalseWinners.retainAll(overallLosers);
+        BitSet possibleFalseWinners = overallWinners;
+        possibleFalseWinners.and(overallLosers);
 
         if (possibleFalseWinners.isEmpty()) { return -1; }
 
@@ -175,16 +370,17 @@ public class GlobalData {
         } //temporary data structure just within this function call
 
         List<FalseWinner> falseWinnerList = new ArrayList<>();
-        for (int falseWinnerID: possibleFalseWinners) {
+        for (int falseWinnerID = possibleFalseWinners.nextSetBit(0); falseWinnerID >= 0;
+             falseWinnerID = possibleFalseWinners.nextSetBit(falseWinnerID + 1)) {
             falseWinnerList.add(new FalseWinner(falseWinnerID));
         }
 
         for (FalseWinner falseWinner: falseWinnerList) {
-            for (Server server : electionResults.keySet()) {
-                if (electionResults.get(server).getLosers().contains(falseWinner.id)) { falseWinner.numberOfElectionsLost++; }
+            for (int s = 0; s < servers.length; s++) {
+                if (electionResults[s].getLosers().get(falseWinner.id)) { falseWinner.numberOfElectionsLost++; }
 
-                if (data.get(server).get(falseWinner.id).getVote() == 0) { continue; } //if it didn't vote on this server, don't have to update minVoteResourceRatio
-                falseWinner.minVoteResourceRatio = Math.min(data.get(server).get(falseWinner.id).getVoteResourceRatio(server.getAvailableResources()),
+                if (data.getVote(index(s, falseWinner.id)) == 0) { continue; } //if it didn't vote on this server, don't have to update minVoteResourceRatio
+                falseWinner.minVoteResourceRatio = Math.min(electionIndex.getRatio(s, falseWinner.id),
                         falseWinner.minVoteResourceRatio);
             }
         }
@@ -197,43 +393,59 @@ public class GlobalData {
     }
 
     /**
-     * Returns the {@link EdgeDeviceInformation} for the server specified.
+     * Returns the ratio between the vote and the resource demanded of an edge device on the server specified,
+     * where the resource demanded is normalised against the resource available on the server.
+     * The ratio of a device that voted is taken from the {@link #electionIndex}, which caches it until the vote, the
+     * resource demanded or the capacity of the server changes.
      * @param edgeDeviceIndex the index of the edge device
      * @param server the specified edge server
-     * @return the edge device information
+     * @return the ratio
+     * @see CapacitySnapshot#normalise(int, int, int)
      */
-    protected EdgeDeviceInformation getEdgeDeviceInformationForServer(int edgeDeviceIndex, Server server) {
-        return data.get(server).get(edgeDeviceIndex);
+    protected double getVoteResourceRatio(int edgeDeviceIndex, Server server) {
+        int s = rowOfServer[server.getIndex()];
+        int k = index(s, edgeDeviceIndex);
+        CapacitySnapshot capacity = edgeDevice.getCapacitySnapshot(server);
+        if (data.getVote(k) <= 0) { //not in the election index
+            return data.getVote(k) / capacity.normalise(data.getCPU(k), data.getBandwidth(k), data.getMemory(k));
+        }
+
+        electionIndex.refresh(s, capacity, data);
+        return electionIndex.getRatio(s, edgeDeviceIndex);
     }
 
     /**
-     * Gets the winners of the most-recently ran election. Implementation:
-     * <p>
-     * Because we know that loser votes are reset to 0 after each {@link #election()},
-     * the winners must be those whose votes are more than 0.
-     * </p>
-     * @return each server mapped to the set of edge devices that won election on the server
+     * @return the row of the server in {@link #data}, -1 if the edge device does not use the server
      */
-    private HashMap<Server, HashSet<Integer>> getWinners() {
-        return electionWinners;
+    private int row(Server server) {
+        return server.getIndex() < rowOfServer.length ? rowOfServer[server.getIndex()] : -1;
+    }
+
+    /**
+     * @return the index in {@link #data} of the edge device on the server
+     */
+    private int index(int serverIndex, int edgeDeviceIndex) {
+        return serverIndex * numberOfDevices + edgeDeviceIndex;
     }
 
     /**
      * Based on the messages received from neighbours, run the agreement algorithm as specified in the DRAGON paper.
+     *
+     * <p>The winners on each server are compared by fingerprint first, and only compared device by device if the
+     * fingerprints are the same.</p>
      * @return true if consensus is reached
      */
     protected boolean agreement(Message incomingMessage) {
-        GlobalData otherData = incomingMessage.getData();
-        HashMap<Server, HashSet<Integer>> otherDataWinners = otherData.getWinners();
-        HashMap<Server, HashSet<Integer>> currentDataWinners = getWinners();
+        Server[] otherServers = incomingMessage.getServers();
+        BitSet[] otherDataWinners = incomingMessage.getWinners();
+        long[] otherFingerprints = incomingMessage.getWinnersFingerprints();
 
         //for each edge server, we compare the winners between the two global data
-        for (Server server : otherDataWinners.keySet()) {
-            HashSet<Integer> other = otherDataWinners.get(server);
-            HashSet<Integer> curr = currentDataWinners.get(server);
+        for (int o = 0; o < otherServers.length; o++) {
+            int s = row(otherServers[o]);
 
             //if the winners are not the same, consensus is not reached. Update the latest information received
-            if (!other.equals(curr)) {
+            if (s < 0 || otherFingerprints[o] != electionWinnersFingerprints[s] || !otherDataWinners[o].equals(electionWinners[s])) {
                 return false;
             }
         }
@@ -241,19 +453,29 @@ public class GlobalData {
     }
 
     /**
-     * Updates information received from other devices if the timestamp is newer.
-     * @param other the other {@link GlobalData} object
+     * Updates information received from other devices if the version is newer.
+     * The message may only contain the entries that changed on the sender (a delta).
+     * @param message the message received
      */
-    protected void update(GlobalData other) {
-        for (Server server : data.keySet()) {
-            for (int i = 0; i < data.get(server).size(); i++) {
-                EdgeDeviceInformation currInfo = getEdgeDeviceInformationForServer(i, server);
-                EdgeDeviceInformation otherInfo = other.getEdgeDeviceInformationForServer(i, server);
+    protected void update(Message message) {
+        clock = Math.max(clock, message.getTimestamp());
+        InformationTable entries = message.getEntries();
+        Server[] messageServers = message.getServers();
+        int[] serverMap = new int[messageServers.length]; //server index on the sender to server index here
+        for (int s = 0; s < messageServers.length; s++) {
+            serverMap[s] = row(messageServers[s]);
+        }
 
-                //curr info is outdated
-                if (currInfo.getTimestamp().isBefore(otherInfo.getTimestamp())) {
-                    data.get(server).set(i, otherInfo);
-                }
+        int messageDevices = entries.getNumberOfDevices();
+        for (int k = 0; k < entries.size(); k++) {
+            int s = serverMap[entries.getIndex(k) / messageDevices];
+            int d = entries.getIndex(k) % messageDevices;
+            if (s < 0 || d >= numberOfDevices) { continue; }
+
+            //curr info is outdated
+            int i = index(s, d);
+            if (data.getVersion(i) < entries.getVersion(k)) {
+                set(i, entries.getVote(k), entries.getCPU(k), entries.getMemory(k), entries.getBandwidth(k), entries.getVersion(k));
             }
         }
     }
@@ -264,9 +486,8 @@ public class GlobalData {
      * @param e the edge server
      */
     protected void updateVoteForServer(int vote, Server e) {
-        EdgeDeviceInformation ownInfo = data.get(e).get(edgeDevice.getIndex());
-        ownInfo.setVote(vote);
-        ownInfo.setTimestamp(LocalTime.now());
+        int k = index(rowOfServer[e.getIndex()], edgeDevice.getIndex());
+        set(k, vote, data.getCPU(k), data.getMemory(k), data.getBandwidth(k), localEvent());
     }
 
     /**
@@ -275,34 +496,73 @@ public class GlobalData {
      * @param e the edge server
      */
     protected void updateResourceForServer(ResourceBundle resource, Server e) {
-        EdgeDeviceInformation ownInfo = data.get(e).get(edgeDevice.getIndex());
-        ownInfo.setResource(resource);
+        int k = index(rowOfServer[e.getIndex()], edgeDevice.getIndex());
+        set(k, data.getVote(k), resource.getCPU(), resource.getMemory(), resource.getBandwidth(), data.getVersion(k));
     }
 
-    public GlobalData clone() {
-        GlobalData copy = null;
-        for (List<EdgeDeviceInformation> list: data.values()) {
-            copy = new GlobalData(edgeDevice, list.size());
-            break;
+    /**
+     * Replaces the information at index k of {@link #data}. Copies the table first if it has been published.
+     * Marks the change in the {@link #electionIndex}, which merges it before the next election on the server.
+     */
+    private void set(int k, int vote, int cpu, int memory, int bandwidth, long version) {
+        if (published) {
+            data = data.copyOnWrite(); //only the page of the server written to is copied
+            published = false;
         }
+        data.set(k, vote, cpu, memory, bandwidth, version);
+        entryRevisions[k] = ++revision;
+        electionIndex.update(k / numberOfDevices, k % numberOfDevices, data);
+    }
 
-        if (copy == null) {
-            System.out.println("ERROR: Could not create a copy of GlobalData.");
-            return null;
-        }
+    /**
+     * Advances the {@link #clock} for a local change.
+     * @return the version of the change: the clock, followed by the index of this edge device in the low {@link #WRITER_BITS}
+     */
+    private long localEvent() {
+        return (++clock << WRITER_BITS) | edgeDevice.getIndex();
+    }
 
-        copy.data.forEach((k, v) -> {
-            for (int i = 0; i < v.size(); i++) {
-                EdgeDeviceInformation original = data.get(k).get(i);
-                EdgeDeviceInformation duplicate = v.get(i);
+    /**
+     * Advances the {@link #clock} for a message sent.
+     * @return the timestamp of the message
+     * @see #createMessage(int, long, long)
+     */
+    protected long sendEvent() {
+        return ++clock;
+    }
 
-                duplicate.setResource(original.getResource().clone());
-                duplicate.setVote(original.getVote());
-                duplicate.setTimestamp(original.getTimestamp());
+    /**
+     * @return the revision of the most recent change
+     * @see #createMessage(int, long, long)
+     */
+    protected long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Creates a message containing the current election winners, and every entry changed after the given revision.
+     * The message shares the winners and (for a full sync) the table of this GlobalData, thus the same message can be
+     * sent to every neighbour with the same revision.
+     *
+     * @param senderID the index of the sending edge device
+     * @param timestamp the timestamp of the message, from {@link #sendEvent()}
+     * @param sinceRevision the {@link #getRevision() revision} at the last message sent to the receiver, or -1 for a full sync
+     * @return the message
+     */
+    protected Message createMessage(int senderID, long timestamp, long sinceRevision) {
+        InformationTable entries;
+        if (sinceRevision < 0) {
+            entries = data;
+            published = true;
+        } else {
+            entries = InformationTable.sparse(numberOfDevices, 16);
+            for (int k = 0; k < entryRevisions.length; k++) {
+                if (entryRevisions[k] > sinceRevision) {
+                    entries.append(k, data, k);
+                }
             }
-        });
+        }
 
-        copy.electionWinners.forEach((k, v) -> v.addAll(electionWinners.get(k)) );
-        return copy;
+        return new Message(senderID, timestamp, servers, electionWinners.clone(), electionWinnersFingerprints, entries);
     }
 }
@@ -2,43 +2,64 @@ package fazirul.fyp.dragon.utils;
 
 import fazirul.fyp.elements.ResourceBundle;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
+/**
+ * The results of a single-node election: the edge devices that won and lost, as sets of device indices, and the resources
+ * left on the server after the winners.
+ *
+ * <p>The winners also have a 64-bit {@link #getWinnersFingerprint() fingerprint}, maintained as winners are added and
+ * removed, so that two sets of winners can be told apart with a single comparison in most cases.</p>
+ */
 public class Election {
-    private final HashSet<Integer> losers;
-    private final HashSet<Integer> winners;
+    private final BitSet losers;
+    private final BitSet winners;
+    private long winnersFingerprint;
     private final ResourceBundle residualResources;
 
     public Election() {
-        losers = new HashSet<>();
-        winners = new HashSet<>();
+        losers = new BitSet();
+        winners = new BitSet();
+        winnersFingerprint = 0;
         residualResources = new ResourceBundle(0, 0, 0);
     }
 
-    public Election(HashSet<Integer> losers, HashSet<Integer> winners, ResourceBundle residualResources) {
+    public Election(BitSet losers, BitSet winners, ResourceBundle residualResources) {
         this.losers = losers;
         this.winners = winners;
+        this.winnersFingerprint = fingerprint(winners);
         this.residualResources = residualResources;
     }
 
-    public HashSet<Integer> getLosers() {
+    public BitSet getLosers() {
         return losers;
     }
 
-    public HashSet<Integer> getWinners() {
+    public BitSet getWinners() {
         return winners;
     }
 
+    /**
+     * @return the fingerprint of {@link #getWinners()}
+     * @see #fingerprint(BitSet)
+     */
+    public long getWinnersFingerprint() {
+        return winnersFingerprint;
+    }
+
     public ResourceBundle getResidualResources() {
         return residualResources;
     }
 
     public void addLoser(int loserID) {
-        losers.add(loserID);
+        losers.set(loserID);
     }
 
     public void addWinner(int winnerID) {
-        winners.add(winnerID);
+        if (!winners.get(winnerID)) {
+            winners.set(winnerID);
+            winnersFingerprint ^= fingerprint(winnerID);
+        }
     }
 
     public void addToResidualResources(ResourceBundle toAdd) {
@@ -46,14 +67,44 @@ public class Election {
     }
 
     public void removeLoser(int loserID) {
-        losers.remove(loserID);
+        losers.clear(loserID);
     }
 
     public void removeWinner(int winnerID) {
-        winners.remove(winnerID);
+        if (winners.get(winnerID)) {
+            winners.clear(winnerID);
+            winnersFingerprint ^= fingerprint(winnerID);
+        }
     }
 
     public void removeFromResidualResources(ResourceBundle toRemove) {
         residualResources.deductResources(toRemove);
     }
+
+    /**
+     * The fingerprint of a set of devices is the XOR of the fingerprints of its devices, thus it does not depend on the
+     * order in which they were added, and adding or removing a device is a single XOR.
+     * Equal sets have equal fingerprints. Different sets have equal fingerprints with a probability of about 2^-64.
+     *
+     * @param devices a set of device indices
+     * @return the fingerprint of the set
+     */
+    public static long fingerprint(BitSet devices) {
+        long result = 0;
+        for (int d = devices.nextSetBit(0); d >= 0; d = devices.nextSetBit(d + 1)) {
+            result ^= fingerprint(d);
+        }
+        return result;
+    }
+
+    /**
+     * @param deviceID a device index
+     * @return the fingerprint of the device, its index mixed by the finaliser of SplitMix64
+     */
+    private static long fingerprint(int deviceID) {
+        long z = deviceID + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
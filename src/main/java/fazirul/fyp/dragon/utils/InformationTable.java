@@ -0,0 +1,243 @@
+package fazirul.fyp.dragon.utils;
+
+import fazirul.fyp.elements.ResourceBatch;
+
+import java.util.Arrays;
+
+/**
+ * The vote, resource demanded and version of edge devices on edge servers (see DRAGON paper), in a flat primitive
+ * layout: one array per field, so that copies, merges and elections are loops over int and long arrays instead of
+ * one object per entry.
+ *
+ * <p>An entry is identified by its index {@code serverIndex * numberOfDevices + edgeDeviceID}. A dense table holds every
+ * entry at its own index (as in {@link fazirul.fyp.dragon.dragonDevice.GlobalData GlobalData}). A sparse table holds
+ * some entries one after the other, in increasing order of index, together with the index of each (as in the delta of a
+ * {@link Message}).</p>
+ *
+ * <p>A dense table is split into one page per server. {@link #copyOnWrite()} shares the pages, and a page is only copied
+ * when it is first written to, thus publishing a table and writing to one server afterwards copies one page only.</p>
+ *
+ * <p>Versions order the changes to an entry: a higher version replaces a lower one (see
+ * {@link fazirul.fyp.dragon.dragonDevice.GlobalData#update(Message) GlobalData.update}).</p>
+ */
+public class InformationTable {
+    private final int numberOfDevices;
+
+    /**
+     * Index of each entry, null for a dense table.
+     */
+    private int[] indices;
+    private int size;
+
+    /**
+     * The number of entries per page: the entries of one server in a dense table, all entries in a sparse table.
+     */
+    private final int pageSize;
+
+    /**
+     * One array per page for each field. The k-th entry is at [k / pageSize][k % pageSize].
+     */
+    private int[][] votes;
+    private int[][] cpus;
+    private int[][] memories;
+    private int[][] bandwidths;
+    private long[][] versions;
+
+    /**
+     * False for a page shared with another table by {@link #copyOnWrite()}. It is copied before it is written to.
+     */
+    private final boolean[] ownedPages;
+
+    private InformationTable(int numberOfDevices, int[] indices, int size, int pageSize, int numberOfPages, int capacityPerPage) {
+        this.numberOfDevices = numberOfDevices;
+        this.indices = indices;
+        this.size = size;
+        this.pageSize = pageSize;
+        votes = new int[numberOfPages][capacityPerPage];
+        cpus = new int[numberOfPages][capacityPerPage];
+        memories = new int[numberOfPages][capacityPerPage];
+        bandwidths = new int[numberOfPages][capacityPerPage];
+        versions = new long[numberOfPages][capacityPerPage];
+        ownedPages = new boolean[numberOfPages];
+        Arrays.fill(ownedPages, true);
+    }
+
+    private InformationTable(InformationTable from) {
+        numberOfDevices = from.numberOfDevices;
+        indices = from.indices == null ? null : Arrays.copyOf(from.indices, from.indices.length);
+        size = from.size;
+        pageSize = from.pageSize;
+        votes = from.votes.clone();
+        cpus = from.cpus.clone();
+        memories = from.memories.clone();
+        bandwidths = from.bandwidths.clone();
+        versions = from.versions.clone();
+        ownedPages = new boolean[votes.length];
+    }
+
+    /**
+     * @param numberOfServers the number of edge servers
+     * @param numberOfDevices the number of edge devices
+     * @return a dense table of numberOfServers * numberOfDevices entries, all without vote or resource, and version 0.
+     * Each server has its own page.
+     */
+    public static InformationTable dense(int numberOfServers, int numberOfDevices) {
+        return new InformationTable(numberOfDevices, null, numberOfServers * numberOfDevices, numberOfDevices,
+                numberOfServers, numberOfDevices);
+    }
+
+    /**
+     * @param numberOfDevices the number of edge devices
+     * @param initialCapacity the expected number of entries
+     * @return an empty sparse table, to be filled with {@link #append(int, InformationTable, int)}
+     */
+    public static InformationTable sparse(int numberOfDevices, int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        return new InformationTable(numberOfDevices, new int[capacity], 0, Integer.MAX_VALUE, 1, capacity);
+    }
+
+    public int getNumberOfDevices() {
+        return numberOfDevices;
+    }
+
+    public boolean isDense() {
+        return indices == null;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param k from 0 to {@link #size()} - 1
+     * @return the index of the k-th entry, i.e. serverIndex * numberOfDevices + edgeDeviceID
+     */
+    public int getIndex(int k) {
+        return indices == null ? k : indices[k];
+    }
+
+    public int getVote(int k) {
+        return votes[k / pageSize][k % pageSize];
+    }
+
+    public int getCPU(int k) {
+        return cpus[k / pageSize][k % pageSize];
+    }
+
+    public int getMemory(int k) {
+        return memories[k / pageSize][k % pageSize];
+    }
+
+    public int getBandwidth(int k) {
+        return bandwidths[k / pageSize][k % pageSize];
+    }
+
+    public long getVersion(int k) {
+        return versions[k / pageSize][k % pageSize];
+    }
+
+    /**
+     * @param page the row of a server in a dense table
+     * @return the resources demanded by every device on the server, at the index of the device, as a batch sharing the
+     * arrays of this table. Only valid until the next write to the table.
+     */
+    public ResourceBatch getResources(int page) {
+        return ResourceBatch.wrap(Math.min(pageSize, size), cpus[page], bandwidths[page], memories[page]);
+    }
+
+    /**
+     * Overwrites the k-th entry. Copies its page first if it is shared with another table.
+     */
+    public void set(int k, int vote, int cpu, int memory, int bandwidth, long version) {
+        int page = k / pageSize;
+        int j = k % pageSize;
+        if (!ownedPages[page]) {
+            ownPage(page);
+        }
+        votes[page][j] = vote;
+        cpus[page][j] = cpu;
+        memories[page][j] = memory;
+        bandwidths[page][j] = bandwidth;
+        versions[page][j] = version;
+    }
+
+    /**
+     * Overwrites the k-th entry with the j-th entry of another table.
+     */
+    public void set(int k, InformationTable from, int j) {
+        set(k, from.getVote(j), from.getCPU(j), from.getMemory(j), from.getBandwidth(j), from.getVersion(j));
+    }
+
+    /**
+     * Adds the j-th entry of another table at the end of this sparse table.
+     *
+     * @param index the index of the entry. Must be greater than the index of the last entry.
+     * @param from the other table
+     * @param j the entry in the other table
+     */
+    public void append(int index, InformationTable from, int j) {
+        if (size == indices.length) {
+            int capacity = size * 2;
+            indices = Arrays.copyOf(indices, capacity);
+            votes[0] = Arrays.copyOf(votes[0], capacity);
+            cpus[0] = Arrays.copyOf(cpus[0], capacity);
+            memories[0] = Arrays.copyOf(memories[0], capacity);
+            bandwidths[0] = Arrays.copyOf(bandwidths[0], capacity);
+            versions[0] = Arrays.copyOf(versions[0], capacity);
+            ownedPages[0] = true;
+        }
+        indices[size] = index;
+        set(size++, from, j);
+    }
+
+    /**
+     * Copies a shared page, so that it can be written to without changing the other tables sharing it.
+     */
+    private void ownPage(int page) {
+        votes[page] = votes[page].clone();
+        cpus[page] = cpus[page].clone();
+        memories[page] = memories[page].clone();
+        bandwidths[page] = bandwidths[page].clone();
+        versions[page] = versions[page].clone();
+        ownedPages[page] = true;
+    }
+
+    /**
+     * Copies this table in O(number of pages): the pages are shared, and each is only copied by the copy when first
+     * written to. As this table does not copy them, it must not be modified afterwards, e.g. once it has been sent in a
+     * message.
+     *
+     * @return a copy of this table, which can be modified independently
+     */
+    public InformationTable copyOnWrite() {
+        return new InformationTable(this);
+    }
+
+    /**
+     * Combines two sparse tables, the entries of the newer one replacing those of the older one at the same index.
+     * Both tables are walked once, as their entries are in increasing order of index.
+     *
+     * @param older the older table
+     * @param newer the newer table
+     * @return a new sparse table
+     */
+    public static InformationTable merge(InformationTable older, InformationTable newer) {
+        InformationTable result = sparse(newer.numberOfDevices, older.size + newer.size);
+        int i = 0;
+        int j = 0;
+        while (i < older.size || j < newer.size) {
+            if (j == newer.size || (i < older.size && older.indices[i] < newer.indices[j])) {
+                result.append(older.indices[i], older, i++);
+            } else {
+                if (i < older.size && older.indices[i] == newer.indices[j]) {
+                    i++;
+                }
+                result.append(newer.indices[j], newer, j++);
+            }
+        }
+        return result;
+    }
+}
@@ -2,33 +2,163 @@ package fazirul.fyp.dragon.utils;
 
 import fazirul.fyp.dragon.dragonDevice.GlobalData;
 import fazirul.fyp.elements.MessageInterface;
-import java.time.LocalTime;
+import fazirul.fyp.elements.Server;
 
+import java.util.BitSet;
+
+/**
+ * The information a DRAGON device sends to its neighbours.
+ *
+ * <p>A message always contains the election winners of the sender, but only the entries of the sender's
+ * {@link GlobalData} that changed since the sender's last message to the same neighbour (a delta, in a sparse
+ * {@link InformationTable}). Every now and then, the sender includes all of its entries instead (a full sync, in a dense
+ * InformationTable).</p>
+ *
+ * <p>Messages are immutable and share their content with the sender's GlobalData, thus the same message can be sent to
+ * several neighbours.</p>
+ */
 public class Message implements MessageInterface {
-    private final GlobalData data;
+    /**
+     * Sender ID, timestamp and full sync flag.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + 1;
+
+    /**
+     * Server ID and number of elements, for each server in {@link #winners} and {@link #entries}.
+     */
+    private static final int SERVER_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Edge device ID, vote, resource (cpu, memory, bandwidth) and version.
+     */
+    private static final int ENTRY_SIZE = 5 * Integer.BYTES + Long.BYTES;
+
     private final int senderID;
-    private final LocalTime timestamp;
+    /**
+     * The Lamport clock of the sender when the message is sent. Strictly increasing between messages of the same sender.
+     */
+    private final long timestamp;
+    private final Server[] servers;
+    private final BitSet[] winners;
+    private final long[] winnersFingerprints;
+    private final InformationTable entries;
 
-    public Message(GlobalData data, int senderID, LocalTime timestamp) {
-        this.data = data;
+    /**
+     * @param senderID the index of the sender
+     * @param timestamp the Lamport clock of the sender (see {@link GlobalData#sendEvent()})
+     * @param servers the edge servers, in the order used by winners and by the indices of entries
+     * @param winners the winners of the sender's most recent election on each server
+     * @param winnersFingerprints the {@link Election#getWinnersFingerprint() fingerprint} of the winners on each server
+     * @param entries the entries included in this message: dense if they are all the entries of the sender, sparse if only the changed ones
+     */
+    public Message(int senderID, long timestamp, Server[] servers, BitSet[] winners, long[] winnersFingerprints,
+                   InformationTable entries) {
         this.senderID = senderID;
         this.timestamp = timestamp;
+        this.servers = servers;
+        this.winners = winners;
+        this.winnersFingerprints = winnersFingerprints;
+        this.entries = entries;
     }
 
+    /**
+     * Messages are immutable, thus can be shared instead of copied.
+     * @return this message
+     */
     @Override
     public Message clone() {
-        return new Message(data.clone(), senderID, timestamp);
+        return this;
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public boolean isNewerThan(MessageInterface other) {
+        return ((Message) other).getTimestamp() < timestamp;
+    }
+
+    /**
+     * The receiver has not processed the waiting message yet, thus both messages must be combined.
+     * Otherwise, the entries found only in the delta of the older message would be lost.
+     */
+    @Override
+    public MessageInterface coalesce(MessageInterface waiting) {
+        Message newer = isNewerThan(waiting) ? this : (Message) waiting;
+        Message older = newer == this ? (Message) waiting : this;
+        if (newer.isFullSync()) {
+            return newer;
+        }
+
+        InformationTable combined;
+        if (older.isFullSync()) { //entries of the newer delta replace those of the older full sync
+            combined = older.entries.copyOnWrite();
+            for (int k = 0; k < newer.entries.size(); k++) {
+                combined.set(newer.entries.getIndex(k), newer.entries, k);
+            }
+        } else {
+            combined = InformationTable.merge(older.entries, newer.entries);
+        }
+        return new Message(newer.senderID, newer.timestamp, newer.servers, newer.winners, newer.winnersFingerprints, combined);
     }
 
+    @Override
     public int getSenderID() {
         return senderID;
     }
 
-    public LocalTime getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public GlobalData getData() {
-        return data;
+    /**
+     * @return the winners on each server, in the order of {@link #getServers()}
+     */
+    public BitSet[] getWinners() {
+        return winners;
+    }
+
+    /**
+     * @return the fingerprint of the winners on each server, in the order of {@link #getServers()}
+     */
+    public long[] getWinnersFingerprints() {
+        return winnersFingerprints;
+    }
+
+    /**
+     * @return the edge servers, in the order used by {@link #getWinners()} and the indices of {@link #getEntries()}
+     */
+    public Server[] getServers() {
+        return servers;
+    }
+
+    public InformationTable getEntries() {
+        return entries;
+    }
+
+    public boolean isFullSync() {
+        return entries.isDense();
+    }
+
+    /**
+     * @return the size of this message (in bytes) if it were encoded for the network
+     */
+    @Override
+    public int getEncodedSize() {
+        int size = HEADER_SIZE;
+        for (BitSet w : winners) {
+            size += SERVER_HEADER_SIZE + Long.BYTES + w.cardinality() * Integer.BYTES; //with the fingerprint
+        }
+        int previousServer = -1;
+        for (int k = 0; k < entries.size(); k++) { //entries are ordered by server
+            int server = entries.getIndex(k) / entries.getNumberOfDevices();
+            if (server != previousServer) {
+                size += SERVER_HEADER_SIZE;
+                previousServer = server;
+            }
+        }
+        return size + entries.size() * ENTRY_SIZE;
     }
 }
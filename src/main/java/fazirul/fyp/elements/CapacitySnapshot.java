@@ -0,0 +1,88 @@
+package fazirul.fyp.elements;
+
+/**
+ * The resources available on a {@link Server} at some point of the simulation. Immutable, thus one snapshot can be
+ * shared by every application reading the capacity of the server.
+ *
+ * <p>The version increases each time resources are allocated or freed on the server, so that the state derived from
+ * a snapshot (e.g. vote:resource ratios) can be kept until the version changes.</p>
+ *
+ * @see Server#getCapacitySnapshot()
+ * @see DistSimManager#getCapacitySnapshot(Server)
+ */
+public final class CapacitySnapshot {
+    private final long version;
+    private final int cpu;
+    private final int bandwidth;
+    private final int memory;
+
+    /**
+     * The scale of each resource type in {@link #normalise(int, int, int)}, computed once per snapshot.
+     */
+    private final double cpuScale;
+    private final double bandwidthScale;
+    private final double memoryScale;
+
+    CapacitySnapshot(long version, int cpu, int bandwidth, int memory) {
+        this.version = version;
+        this.cpu = cpu;
+        this.bandwidth = bandwidth;
+        this.memory = memory;
+
+        double average = (bandwidth + cpu + memory)/3.0;
+        cpuScale = average / cpu;
+        bandwidthScale = average / bandwidth;
+        memoryScale = average / memory;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getCPU() {
+        return cpu;
+    }
+
+    public int getBandwidth() {
+        return bandwidth;
+    }
+
+    public int getMemory() {
+        return memory;
+    }
+
+    /**
+     * @param resourceDemanded a resource
+     * @return true if the resource fits in the resources available
+     * @see ResourceBundle#isBounded(ResourceBundle)
+     */
+    public boolean isBounded(ResourceBundle resourceDemanded) {
+        return cpu >= resourceDemanded.getCPU() && memory >= resourceDemanded.getMemory() && bandwidth >= resourceDemanded.getBandwidth();
+    }
+
+    /**
+     * @return the resource demanded normalised against the resources available
+     * @see ResourceBundle#normalise(ResourceBundle)
+     */
+    public double normalise(int cpu, int bandwidth, int memory) {
+        return ResourceBundle.normalise(cpu, bandwidth, memory, cpuScale, bandwidthScale, memoryScale);
+    }
+
+    /**
+     * @return the resources available, in a new array with one element per column of a {@link ResourceBatch}
+     */
+    public int[] toArray() {
+        int[] result = new int[ResourceBatch.RESOURCE_BUNDLE_DIMENSIONS];
+        result[ResourceBatch.CPU] = cpu;
+        result[ResourceBatch.BANDWIDTH] = bandwidth;
+        result[ResourceBatch.MEMORY] = memory;
+        return result;
+    }
+
+    /**
+     * @return the resources available, in a new ResourceBundle that can be modified
+     */
+    public ResourceBundle toResourceBundle() {
+        return new ResourceBundle(cpu, bandwidth, memory);
+    }
+}
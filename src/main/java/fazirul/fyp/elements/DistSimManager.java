@@ -1,5 +1,8 @@
 package fazirul.fyp.elements;
 
+import fazirul.fyp.elements.topology.Topology;
+import fazirul.fyp.elements.topology.TopologyGenerator;
+import fazirul.fyp.elements.topology.TopologyGenerators;
 import org.cloudbus.cloudsim.core.CloudSimEntity;
 import org.cloudbus.cloudsim.core.Simulation;
 import org.cloudbus.cloudsim.core.events.SimEvent;
@@ -9,19 +12,84 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DistSimManager extends CloudSimEntity {
     private static final Logger LOGGER = LoggerFactory.getLogger(CloudSimEntity.class.getSimpleName());
-    private int topology = 0;
+    private TopologyGenerator topologyGenerator = TopologyGenerators.line();
+
+    /**
+     * Network topology between the participating applications, patched as applications join and leave.
+     * Null until the first distributed simulation, or after the {@link #topologyGenerator} has changed.
+     * @see #createTopology()
+     */
+    private Topology topology = null;
+
+    /**
+     * If true, each distributed simulation is run by a {@link VirtualTimeEngine} instead of one thread per application.
+     */
+    private boolean virtualTimeMode = false;
+
+    /**
+     * Virtual time (in milliseconds) charged for each orchestration step when {@link #virtualTimeMode} is used.
+     */
+    private long virtualStepCostInMilliseconds = 1;
+
+    /**
+     * The threads running the applications when not in {@link #virtualTimeMode}.
+     */
+    private ExecutionBackend executionBackend = ExecutionBackend.VIRTUAL_THREADS;
+
+    /**
+     * Number of threads when {@link #executionBackend} is {@link ExecutionBackend#PLATFORM_POOL}.
+     */
+    private int platformPoolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Minimum number of edge servers to elect at once for an application to run the elections in parallel.
+     * Never by default, as the pool is shared by every application running at the same time.
+     */
+    private int parallelElectionThreshold = Integer.MAX_VALUE;
+
+    private static final int DEFAULT_DELIVERY_THREADS = 2;
+
+    /**
+     * Delivers messages between applications when running against the wall clock.
+     */
+    private final MessageDeliveryScheduler deliveryScheduler = new MessageDeliveryScheduler(DEFAULT_DELIVERY_THREADS);
+
+    /**
+     * Pending START_ALGORITHM_EVENTs and ARRIVAL_EVENTs of the applications, to decide offload eligibility without
+     * scanning the future event list.
+     */
+    private final PendingEventIndex pendingEvents = new PendingEventIndex();
+
+    /**
+     * Detects the end of the current distributed simulation. A new one is created for each run.
+     */
+    private TerminationDetector terminationDetector = new TerminationDetector(List.of());
+    /**
+     * The resources available on each server used by the participating applications, taken at the start of the current
+     * distributed simulation. Resources are only allocated or freed by CloudSim events, thus they do not change during a
+     * distributed simulation, and every application reads the same snapshots. At the {@link Server#getIndex() index} of each server.
+     */
+    private CapacitySnapshot[] capacitySnapshots = new CapacitySnapshot[0];
     private final HashMap<Double, Double> totalTimeTaken = new HashMap<>();
     private final HashMap<Double, Integer> numApplications = new HashMap<>();
     private final HashMap<Double, Integer> totalMessagesExchanged = new HashMap<>();
+    private final HashMap<Double, Long> totalBytesExchanged = new HashMap<>();
+    private final HashMap<Double, Integer> networkDiameter = new HashMap<>();
+    private final HashMap<Double, Integer> totalBudgetedSearches = new HashMap<>();
+    private final HashMap<Double, Integer> totalBudgetExhaustions = new HashMap<>();
 
     /**
      * To run the distributed algorithm, the DistSimManager has to keep track of the current devices
-     * participating in the algorithm. It is maintained in this list.
+     * participating in the algorithm. Each of them is given a stable slot in this membership.
      */
-    private final List<DistributedApplication> participatingApplications = new ArrayList<>();
+    private final Membership participatingApplications = new Membership();
 
     /**
      * Each device that has ended will be moved to this list.
@@ -55,13 +123,19 @@ public class DistSimManager extends CloudSimEntity {
                 LOGGER.warn("{}: {}: received event from unexpected entity.", getSimulation().clockStr(), this);
                 return;
             }
-            participatingApplications.add((DistributedApplication) simEvent.getSource());
+            pendingEvents.removeStartAlgorithmEvent(simEvent.getTime());
+            addApplication((DistributedApplication) simEvent.getSource());
 
             totalTimeTaken.put(simEvent.getTime(), 0d);
             totalMessagesExchanged.put(simEvent.getTime(), 0);
+            totalBytesExchanged.put(simEvent.getTime(), 0L);
+            totalBudgetedSearches.put(simEvent.getTime(), 0);
+            totalBudgetExhaustions.put(simEvent.getTime(), 0);
             numApplications.put(simEvent.getTime(), getNumParticipatingApplications());
             resetApplications();
+            networkDiameter.put(simEvent.getTime(), topology.estimateDiameter());
             runSimulation();
+            updateBudgetStatistics(simEvent.getTime());
             offloadEligibleApplications();
             updateStatistics(simEvent.getTime());
         } else {
@@ -77,7 +151,7 @@ public class DistSimManager extends CloudSimEntity {
     private void offloadEligibleApplications() {
         int idx = 0;
         while (idx < participatingApplications.size()) {
-            DistributedApplication app = participatingApplications.get(idx);
+            DistributedApplication app = participatingApplications.getMembers().get(idx);
             if (!app.hasFailed()) {
                 double offloadTime = getSimulation().clock() + app.getRuntime();
 
@@ -88,27 +162,14 @@ public class DistSimManager extends CloudSimEntity {
 
                 If no such events exist in the future event list, schedule OffloadEvent at offloadTime to the application.
                  */
-
-                long numInvalidationEvents = getSimulation().getNumberOfFutureEvents(evt -> {
-                   if (evt.getTime() <= offloadTime) {
-                       if (evt.getTag() == DistributedSimTags.START_ALGORITHM_EVENT && evt.getSource() instanceof DistributedApplication) {
-                           return true;
-                       }
-
-                       return evt.getTag() == DistributedSimTags.ARRIVAL_EVENT && evt.getSource() instanceof DistributedApplication &&
-                               evt.getTime() + DistributedApplication.WARM_UP_TIME <= offloadTime;
-                   }
-                   return false;
-                });
-
-                if (numInvalidationEvents == 0) {
+                if (!pendingEvents.hasInvalidationEventBefore(offloadTime)) {
 //                    LOGGER.info("{}: {}: {} successful in distributed simulation. Runtime = {}",
 //                            getSimulation().clockStr(), getName(), app.getName(), app.getRuntime());
                     send(app, app.getRuntime(), DistributedSimTags.TASK_OFFLOAD_EVENT);
                 }
                 idx++;
             } else {
-                removeApplication(app);
+                removeApplication(app); //the last application is moved into idx, thus idx is not incremented
                 app.shutdown();
                 failedList.add(app);
             }
@@ -117,64 +178,139 @@ public class DistSimManager extends CloudSimEntity {
 
     /**
      * Based on the {@link #participatingApplications}, run the distributed algorithm for each device.
-     * <p>Functions are run using multi-threading.</p>
+     * <p>Functions are run on the {@link #executionBackend}, or in a {@link VirtualTimeEngine} if {@link #virtualTimeMode} is set.
+     * The run ends once its {@link TerminationDetector} finds that every device is waiting and no message is left.</p>
      *
      * @see DistributedApplication#startDistributedAlgorithm()
      */
     private void runSimulation() {
         LOGGER.info("{}: {} starting Distributed Simulation with {} participating devices...",
                 getSimulation().clockStr(), getName(), getNumParticipatingApplications());
-        List<Thread> threads = new ArrayList<>();
-        for (DistributedApplication app : participatingApplications) {
-            threads.add(new Thread(app::startDistributedAlgorithm));
+        terminationDetector = new TerminationDetector(participatingApplications.getMembers());
+        capacitySnapshots = new CapacitySnapshot[Server.getNumberOfServers(getSimulation())];
+        for (DistributedApplication app : participatingApplications.getMembers()) {
+            for (Server server : app.getEdgeServers()) {
+                if (capacitySnapshots[server.getIndex()] == null) {
+                    capacitySnapshots[server.getIndex()] = server.getCapacitySnapshot();
+                }
+            }
+        }
+        if (virtualTimeMode) {
+            new VirtualTimeEngine(virtualStepCostInMilliseconds).run(participatingApplications.getMembers(), terminationDetector);
+        } else {
+            ExecutionBackend backend = executionBackend.resolve();
+            if (backend == ExecutionBackend.PLATFORM_POOL) {
+                runPool();
+            } else {
+                runVirtualThreads();
+            }
+            LOGGER.info("{}: {} delivered {} messages: average lag = {} ms, max lag = {} ms, max queue depth = {}",
+                    getSimulation().clockStr(), getName(), deliveryScheduler.getDeliveredCount(),
+                    String.format("%.3f", deliveryScheduler.getAverageLagInMilliseconds()),
+                    String.format("%.3f", deliveryScheduler.getMaxLagInMilliseconds()), deliveryScheduler.getMaxQueueDepth());
+            deliveryScheduler.resetStatistics();
         }
 
-        for (Thread t: threads) {
-            t.start();
+        for (DistributedApplication app : participatingApplications.getMembers()) {
+            app.printResults();
         }
+    }
 
-        for (Thread t: threads) {
-            try {
-                t.join();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    /**
+     * Runs the distributed algorithm of each device on a {@link PooledStepEngine} of {@link #platformPoolSize} threads,
+     * against the wall clock. Logs the peak number of threads running an application at the same time, and the time taken
+     * until all of them have ended.
+     */
+    private void runPool() {
+        PooledStepEngine engine = new PooledStepEngine(platformPoolSize);
+        long startTime = System.nanoTime();
+        engine.run(participatingApplications.getMembers());
+
+        LOGGER.info("{}: {} ran {} applications on {} of {} threads: steps = {}, peak threads in use = {}, time to join = {} s",
+                getSimulation().clockStr(), getName(), getNumParticipatingApplications(), ExecutionBackend.PLATFORM_POOL,
+                engine.getNumberOfThreads(), engine.getNumberOfSteps(), engine.getPeakThreadsInUse(),
+                String.format("%.3f", (System.nanoTime() - startTime) / 1_000_000_000.0d));
+    }
+
+    /**
+     * Runs the distributed algorithm of each device on its own virtual thread, against the wall clock.
+     * Logs the peak number of threads running an application at the same time, and the time taken until all of them have ended.
+     */
+    private void runVirtualThreads() {
+        AtomicInteger threadsInUse = new AtomicInteger();
+        AtomicInteger peakThreadsInUse = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (DistributedApplication app : participatingApplications.getMembers()) {
+            tasks.add(() -> {
+                peakThreadsInUse.accumulateAndGet(threadsInUse.incrementAndGet(), Math::max);
+                try {
+                    app.startDistributedAlgorithm();
+                } finally {
+                    threadsInUse.decrementAndGet();
+                }
+                return null;
+            });
         }
 
-        for (DistributedApplication app : participatingApplications) {
-            app.printResults();
+        long startTime = System.nanoTime();
+        ExecutorService executor = ExecutionBackend.VIRTUAL_THREADS.createVirtualThreadExecutor();
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
         }
+
+        LOGGER.info("{}: {} ran {} applications on {}: peak threads in use = {}, time to join = {} s",
+                getSimulation().clockStr(), getName(), tasks.size(), ExecutionBackend.VIRTUAL_THREADS, peakThreadsInUse.get(),
+                String.format("%.3f", (System.nanoTime() - startTime) / 1_000_000_000.0d));
     }
 
     /**
-     * For each application, reset its internal variables related to distributed algorithm.
-     * Then create the topology based on the current device list.
+     * Create the topology if there is none yet. Then, for each application, reset its internal variables related to distributed algorithm.
+     * Applications keep their index (slot) across distributed simulations.
      * @see DistributedApplication#reset()
      */
     private void resetApplications() {
-        for (int idx = 0; idx < participatingApplications.size(); idx++) {
-            DistributedApplication app = participatingApplications.get(idx);
-            app.reset();
-            app.setIndex(idx);
+        if (topology == null) {
+            createTopology();
         }
 
-        createTopology();
+        for (DistributedApplication app : participatingApplications.getMembers()) {
+            app.reset();
+        }
     }
 
     /**
+     * Gives the application a slot, and patches it into the topology. O(1) apart from the topology patch.
      * @param Application device to be added
      * @see #participatingApplications
+     * @see TopologyGenerator#join(Topology, int)
      */
     public void addApplication(DistributedApplication Application) {
-        participatingApplications.add(Application);
+        if (participatingApplications.contains(Application)) {
+            return;
+        }
+        int slot = participatingApplications.join(Application);
+        if (topology != null) {
+            topologyGenerator.join(topology, slot);
+        }
     }
 
     /**
+     * Frees the slot of the application, and patches it out of the topology. O(1) apart from the topology patch.
      * @param Application device to be removed
      * @see #participatingApplications
+     * @see TopologyGenerator#leave(Topology, int)
      */
     public void removeApplication(DistributedApplication Application) {
-        participatingApplications.remove(Application);
+        int slot = participatingApplications.leave(Application);
+        if (slot >= 0 && topology != null) {
+            topologyGenerator.leave(topology, slot);
+        }
     }
 
     /**
@@ -187,45 +323,147 @@ public class DistSimManager extends CloudSimEntity {
 
     /**
      * Sets the network topology to be sparse (i.e. maximum network diameter)
+     * @see TopologyGenerators#line()
      */
     public void setSparseTopology() {
-        topology = 0;
+        setTopologyGenerator(TopologyGenerators.line());
     }
 
     /**
      * Sets the network topology to be dense (i.e. network diameter = 1)
+     * @see TopologyGenerators#complete()
      */
     public void setDenseTopology() {
-        topology = 1;
+        setTopologyGenerator(TopologyGenerators.complete());
     }
 
     /**
-     * Based on the topology (sparse vs dense), add the appropriate neighbours for each device.
-     * Usage can be found in {@link #resetApplications()} only.
+     * @param generator creates the network topology at the next distributed simulation, e.g. one of {@link TopologyGenerators}
+     */
+    public void setTopologyGenerator(TopologyGenerator generator) {
+        topologyGenerator = generator;
+        topology = null;
+    }
+
+    /**
+     * Sets whether the distributed simulation is run in virtual time.
+     * <p>In virtual time, message latency, waiting periods and the compute cost of each orchestration step advance
+     * a simulated clock. Runtimes are then deterministic and do not depend on the load of the host.</p>
      *
-     * <p>For sparse topology, each device will have at most 2 neighbours (left and/or right in the list).</p>
-     * <p>For dense topology, each device will be connected to every other device.</p>
+     * @param enabled true to use a {@link VirtualTimeEngine}, false to run one thread per application
      */
-    private void createTopology() {
-        for (int idx = 0; idx < participatingApplications.size(); idx++) {
-            DistributedApplication app = participatingApplications.get(idx);
-            if (topology == 0) { // SPARSE TOPOLOGY
-                if (idx > 0) {
-                    app.addNeighbour(participatingApplications.get(idx - 1));
-                }
-                if (idx < participatingApplications.size() - 1) {
-                    app.addNeighbour(participatingApplications.get(idx + 1));
-                }
-            } else { // DENSE TOPOLOGY
-                int copy = idx; //not allowed to have reassigned variable in lambda function, thus make a copy
-                participatingApplications.forEach(e -> {
-                    // if it's not the current index (itself), add as neighbour
-                    if (e.getIndex() != copy) {
-                        app.addNeighbour(e);
-                    }
-                });
-            }
+    public void setVirtualTimeMode(boolean enabled) {
+        virtualTimeMode = enabled;
+    }
+
+    /**
+     * @param stepCostInMilliseconds virtual time charged for each orchestration step. Only used in virtual time mode.
+     * @see #setVirtualTimeMode(boolean)
+     */
+    public void setVirtualStepCost(long stepCostInMilliseconds) {
+        virtualStepCostInMilliseconds = stepCostInMilliseconds;
+    }
+
+    /**
+     * @param backend the threads used to run the applications against the wall clock. Not used in virtual time mode.
+     * @see #setVirtualTimeMode(boolean)
+     */
+    public void setExecutionBackend(ExecutionBackend backend) {
+        executionBackend = backend;
+    }
+
+    /**
+     * @param poolSize the number of threads when using {@link ExecutionBackend#PLATFORM_POOL}, or
+     *                 {@link ExecutionBackend#VIRTUAL_THREADS} on a runtime without virtual threads. Any number of
+     *                 applications share them.
+     */
+    public void setPlatformPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Platform pool needs at least one thread.");
         }
+        platformPoolSize = poolSize;
+    }
+
+    /**
+     * Elections of fewer servers stay sequential, as the fan-out over the common ForkJoinPool then costs more than it saves.
+     * The results are the same either way; compare the election times of the applications to choose the threshold.
+     *
+     * @param threshold the minimum number of edge servers to elect at once for an application to run the elections in
+     *                  parallel, Integer.MAX_VALUE to never run them in parallel
+     */
+    public void setParallelElectionThreshold(int threshold) {
+        parallelElectionThreshold = threshold;
+    }
+
+    public int getParallelElectionThreshold() {
+        return parallelElectionThreshold;
+    }
+
+    /**
+     * Based on the {@link #topologyGenerator}, create the topology between the devices. Each device is a node, identified by its index.
+     * The slots are compacted first, as the generator expects the nodes 0 to n - 1.
+     * Usage can be found in {@link #resetApplications()} only.
+     */
+    private void createTopology() {
+        participatingApplications.compact();
+        topology = topologyGenerator.generate(participatingApplications.size());
+    }
+
+    /**
+     * @return the network topology of the current distributed simulation
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @param index the index (slot) of the application in the current distributed simulation
+     * @return the application, null if no application is in the slot
+     * @see DistributedApplication#getIndex()
+     */
+    public DistributedApplication getApplication(int index) {
+        return participatingApplications.get(index);
+    }
+
+    /**
+     * Data indexed by the index of the applications (e.g. GlobalData) should be sized by this rather than
+     * {@link #getNumParticipatingApplications()}, as slots of applications that have left may not be reused yet.
+     * @return the number of slots; every index of a participating application is lower
+     */
+    public int getNumberOfSlots() {
+        return participatingApplications.getNumberOfSlots();
+    }
+
+    /**
+     * @return the scheduler that delivers messages between applications when running against the wall clock
+     */
+    public MessageDeliveryScheduler getDeliveryScheduler() {
+        return deliveryScheduler;
+    }
+
+    /**
+     * @return the index of pending START_ALGORITHM_EVENTs and ARRIVAL_EVENTs, maintained by the applications sending them
+     */
+    PendingEventIndex getPendingEvents() {
+        return pendingEvents;
+    }
+
+    /**
+     * @return the termination detector of the current distributed simulation
+     */
+    public TerminationDetector getTerminationDetector() {
+        return terminationDetector;
+    }
+
+    /**
+     * @param server an edge server
+     * @return the resources available on the server at the start of the current distributed simulation, or currently
+     * available if the server is not used by any participating application
+     */
+    public CapacitySnapshot getCapacitySnapshot(Server server) {
+        CapacitySnapshot[] snapshots = capacitySnapshots;
+        CapacitySnapshot snapshot = server.getIndex() < snapshots.length ? snapshots[server.getIndex()] : null;
+        return snapshot != null ? snapshot : server.getCapacitySnapshot();
     }
 
     /**
@@ -238,15 +476,32 @@ public class DistSimManager extends CloudSimEntity {
     public void printStatistics() {
         for (double simulationTime : totalMessagesExchanged.keySet()) {
             System.out.printf("time = %.2f || ", simulationTime);
-            System.out.printf("Number Applications = %d || Total Messages Exchanged = %d || Average Convergence Time = %.5f\n",
-                    numApplications.get(simulationTime), totalMessagesExchanged.get(simulationTime), totalTimeTaken.get(simulationTime) / numApplications.get(simulationTime));
+            System.out.printf("Number Applications = %d || Network Diameter = %d || Total Messages Exchanged = %d || Total Bytes Exchanged = %d || Average Convergence Time = %.5f",
+                    numApplications.get(simulationTime), networkDiameter.get(simulationTime), totalMessagesExchanged.get(simulationTime), totalBytesExchanged.get(simulationTime),
+                    totalTimeTaken.get(simulationTime) / numApplications.get(simulationTime));
+            int budgetedSearches = totalBudgetedSearches.get(simulationTime);
+            if (budgetedSearches > 0) {
+                System.out.printf(" || Budget Exhausted = %d/%d searches", totalBudgetExhaustions.get(simulationTime), budgetedSearches);
+            }
+            System.out.println();
         }
     }
 
     private void updateStatistics(double simulationClock) {
-        for (DistributedApplication app: participatingApplications) {
+        for (DistributedApplication app: participatingApplications.getMembers()) {
             totalTimeTaken.put(simulationClock, totalTimeTaken.get(simulationClock) + app.getRuntime());
             totalMessagesExchanged.put(simulationClock, totalMessagesExchanged.get(simulationClock) + app.getTotalMessagesSent());
+            totalBytesExchanged.put(simulationClock, totalBytesExchanged.get(simulationClock) + app.getTotalBytesSent());
+        }
+    }
+
+    /**
+     * Taken before the applications that failed are removed, as a spent budget may be why they failed.
+     */
+    private void updateBudgetStatistics(double simulationClock) {
+        for (DistributedApplication app: participatingApplications.getMembers()) {
+            totalBudgetedSearches.put(simulationClock, totalBudgetedSearches.get(simulationClock) + app.getBudgetedSearches());
+            totalBudgetExhaustions.put(simulationClock, totalBudgetExhaustions.get(simulationClock) + app.getBudgetExhaustions());
         }
     }
 }
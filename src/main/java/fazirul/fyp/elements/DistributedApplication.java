@@ -47,16 +47,10 @@ public abstract class DistributedApplication extends CloudSimEntity {
     private final String username;
 
     /**
-     * List of edge devices connected to the current device.
+     * Incoming messages, keeping only the latest message of each neighbour.
+     * @see #addToQueue(MessageInterface, DistributedApplication)
      */
-
-    protected final List<DistributedApplication> neighbours = new ArrayList<>();
-
-    /**
-     * Incoming {@link MessageQueue message queue}.
-     * @see #addToQueue(MessageInterface)
-     */
-    protected MessageQueue incomingMessages = new MessageQueue();
+    protected final Mailbox incomingMessages = new Mailbox();
 
     /**
      * Each task is represented by the resource demanded.
@@ -74,6 +68,18 @@ public abstract class DistributedApplication extends CloudSimEntity {
      */
     private int totalMessagesSent = 0;
 
+    /**
+     * Keeps track of the {@link MessageInterface#getEncodedSize() encoded size} of messages sent. Useful for statistics purposes.
+     */
+    private long totalBytesSent = 0;
+
+    /**
+     * Number of searches bounded by a budget during the distributed simulation, and how many of them stopped at it.
+     * @see #recordBudgetedSearch(boolean)
+     */
+    private int budgetedSearches = 0;
+    private int budgetExhaustions = 0;
+
     /**
      * @see #startInternal()
      */
@@ -82,7 +88,7 @@ public abstract class DistributedApplication extends CloudSimEntity {
     /**
      * Index will be set by {@link DistSimManager}.
      * <p>This is to identify between different edge devices during the distributed algorithm process.
-     * {@link DistSimManager} will assign based on its index in the current list of edge devices.
+     * {@link DistSimManager} will assign a slot that stays the same while the device participates.
      * </p>
      */
     private int index = -1;
@@ -98,9 +104,75 @@ public abstract class DistributedApplication extends CloudSimEntity {
     protected boolean failed = false;
 
     /**
-     *
+     * The edge servers found in the simulation, in order of {@link Server#getIndex() index}.
      */
-    private final HashSet<Server> servers = new HashSet<>();
+    private final List<Server> servers;
+
+    /**
+     * Set only while this application runs in a {@link VirtualTimeEngine}. Null when running against the wall clock.
+     */
+    private VirtualTimeEngine virtualTimeEngine = null;
+
+    /**
+     * Set only while this application runs in a {@link PooledStepEngine}. Null otherwise.
+     */
+    private PooledStepEngine pooledStepEngine = null;
+
+    /**
+     * @see #getDistSimManager()
+     */
+    private DistSimManager distSimManager = null;
+
+    /**
+     * Local clock of this application in virtual time (in milliseconds).
+     * @see VirtualTimeEngine
+     */
+    private long virtualClock = 0;
+
+    /**
+     * Timeout requested by {@link #awaitMessages(long)} during the current step in virtual time, or -1.
+     */
+    private long virtualAwaitTimeout = -1;
+
+    /**
+     * While waiting for messages in virtual time, the time at which the wait times out. Otherwise -1.
+     */
+    private long virtualWakeUpTime = -1;
+
+    /**
+     * Incremented whenever a message cuts a wait short, so that the {@link VirtualTimeEngine} can discard the step
+     * scheduled at {@link #virtualWakeUpTime}.
+     */
+    private int virtualStepGeneration = 0;
+
+    /**
+     * Timeout requested by {@link #awaitMessages(long)} or {@link #awaitMessagesOrTermination()}, and time requested by
+     * {@link #sleep(long)}, during the current step in a {@link PooledStepEngine}. Otherwise -1.
+     */
+    private long pooledAwaitTimeout = -1;
+    private long pooledSleep = -1;
+
+    /**
+     * When this application started in a {@link PooledStepEngine}, as from System.nanoTime().
+     */
+    private long pooledStartTime = 0;
+
+    /**
+     * Timeout of a wait in virtual time that only ends with a message or the termination of the distributed simulation.
+     * @see #awaitMessagesOrTermination()
+     */
+    static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    /**
+     * True while this application has nothing left to do unless a message arrives.
+     * @see TerminationDetector
+     */
+    private boolean passive = false;
+
+    /**
+     * Set once this application has ended. Messages posted to it afterwards are discarded.
+     */
+    private volatile boolean retired = false;
 
     public DistributedApplication(CloudSim simulation, String username, double arrivalTime, List<ResourceBundle> tasks) {
         super(simulation);
@@ -108,8 +180,7 @@ public abstract class DistributedApplication extends CloudSimEntity {
         broker = new DatacenterBrokerSimple(simulation, DEFAULT_NAME + username);
         broker.setVmDestructionDelay(1.01);
         //add all edge servers found. IMPORTANT, Edge servers MUST be created BEFORE edge device created!
-        getSimulation().getEntityList().stream().filter(simEntity -> simEntity instanceof Server)
-                .forEach(simEntity -> servers.add((Server) simEntity));
+        servers = List.copyOf(Server.getServers(simulation));
         this.username = username;
         this.arrivalTime = arrivalTime;
         this.tasks = tasks;
@@ -133,8 +204,21 @@ public abstract class DistributedApplication extends CloudSimEntity {
         return runtime;
     }
 
-    public void addNeighbour(DistributedApplication neighbour) {
-        this.neighbours.add(neighbour);
+    /**
+     * @return the number of applications connected to the current application
+     * @see DistSimManager#getTopology()
+     */
+    public int getNumberOfNeighbours() {
+        return getDistSimManager().getTopology().getDegree(index);
+    }
+
+    /**
+     * @param k from 0 to {@link #getNumberOfNeighbours()} - 1
+     * @return the k-th application connected to the current application
+     */
+    public DistributedApplication getNeighbour(int k) {
+        DistSimManager manager = getDistSimManager();
+        return manager.getApplication(manager.getTopology().getNeighbour(index, k));
     }
 
     public List<ResourceBundle> getTasks() {
@@ -145,12 +229,36 @@ public abstract class DistributedApplication extends CloudSimEntity {
         tasks.add(task);
     }
 
-    public HashSet<Server> getEdgeServers() { return servers; }
+    public List<Server> getEdgeServers() { return servers; }
+
+    /**
+     * @return the number of edge servers in the simulation. Arrays indexed by {@link Server#getIndex()} have this length.
+     */
+    public int getNumberOfServers() { return Server.getNumberOfServers(getSimulation()); }
 
     public boolean hasFailed() { return failed; }
 
     public int getTotalMessagesSent() { return totalMessagesSent; }
 
+    public long getTotalBytesSent() { return totalBytesSent; }
+
+    public int getBudgetedSearches() { return budgetedSearches; }
+
+    public int getBudgetExhaustions() { return budgetExhaustions; }
+
+    /**
+     * Called by applications after each search bounded by a budget (e.g. of nodes or time), so that the
+     * {@link DistSimManager} can report how often the budgets are spent.
+     *
+     * @param exhausted true if the search stopped at its budget
+     */
+    protected void recordBudgetedSearch(boolean exhausted) {
+        budgetedSearches++;
+        if (exhausted) {
+            budgetExhaustions++;
+        }
+    }
+
     public void setNetworkLatency(int latencyInMillis) {
         networkLatencyInMilliseconds = latencyInMillis;
     }
@@ -161,7 +269,9 @@ public abstract class DistributedApplication extends CloudSimEntity {
         if(!schedule(arrivalTime, DistributedSimTags.ARRIVAL_EVENT)) {
             LOGGER.warn("{}: {}: Could not schedule ArrivalEvent to itself.",
                     getSimulation().clockStr(), getName());
-        };
+        } else if (getDistSimManager() != null) {
+            getDistSimManager().getPendingEvents().addArrivalEvent(getSimulation().clock() + arrivalTime);
+        }
     }
 
     @Override
@@ -177,14 +287,14 @@ public abstract class DistributedApplication extends CloudSimEntity {
         }
 
         if (simEvent.getTag() == DistributedSimTags.ARRIVAL_EVENT) {
+            manager.getPendingEvents().removeArrivalEvent(simEvent.getTime());
             LOGGER.info("{}: {}: Arrived into system.",
                     getSimulation().clockStr(), getName());
             //next event will be StartAlgoEvent at the following time
             double startAlgoTime = getSimulation().clock() + WARM_UP_TIME;
 
             //check if the next event will be at the same time as any future StartAlgoEvent
-            long numStartAlgoEventsAtSameTime = getSimulation().getNumberOfFutureEvents(evt -> evt.getTag() == DistributedSimTags.START_ALGORITHM_EVENT
-                    && evt.getSource() instanceof DistributedApplication && evt.getTime() == startAlgoTime);
+            long numStartAlgoEventsAtSameTime = manager.getPendingEvents().countStartAlgorithmEventsAt(startAlgoTime);
 
             if (numStartAlgoEventsAtSameTime > 1) {
                 //this should NOT happen
@@ -193,6 +303,7 @@ public abstract class DistributedApplication extends CloudSimEntity {
             } else if (numStartAlgoEventsAtSameTime == 0) {
                 //if no StartAlgoEvent at the same time, proceed to send this event to the DistSimManager
                 send(manager, WARM_UP_TIME, DistributedSimTags.START_ALGORITHM_EVENT);
+                manager.getPendingEvents().addStartAlgorithmEvent(startAlgoTime);
             } else {
                 getDistSimManager().addApplication(this); //register the edge device to the DistSimManager
             }
@@ -204,30 +315,49 @@ public abstract class DistributedApplication extends CloudSimEntity {
         }
     }
 
+    /**
+     * Used by the {@link MessageDeliveryScheduler} and the {@link VirtualTimeEngine} to put a message into the
+     * {@link #incomingMessages} of this application once its latency has passed.
+     *
+     * @param message the message delivered
+     */
+    void receive(MessageInterface message) {
+        TerminationDetector detector = getDistSimManager().getTerminationDetector();
+        if (!incomingMessages.addMessage(message)) {
+            detector.messagesDiscarded(1);
+        }
+        if (retired) {
+            detector.messagesDiscarded(incomingMessages.discardAll());
+        }
+    }
+
     /**
      * Used by other DistributedApplication instances to send messages to the current instance.
-     * Usage only in broadcast function.
+     * Usage only in sendMessage function.
      *
      * @param message Message to be sent.
-     * @see #broadcast(MessageInterface)
+     * @param sender the application sending the message
+     * @see #sendMessage(DistributedApplication, MessageInterface)
      */
-    private void addToQueue(MessageInterface message) {
-        new Thread(() -> {
-            try {
-                TimeUnit.MILLISECONDS.sleep(networkLatencyInMilliseconds);
-            } catch (Exception ignored) {}
-            incomingMessages.addMessage(message);
-        }).start();
+    private void addToQueue(MessageInterface message, DistributedApplication sender) {
+        if (virtualTimeEngine != null) {
+            virtualTimeEngine.scheduleDelivery(this, message, sender.virtualClock, networkLatencyInMilliseconds);
+            return;
+        }
+        getDistSimManager().getDeliveryScheduler().schedule(this, message, networkLatencyInMilliseconds);
     }
 
 
     /**
-     * Based on the simulation's entity list, find the only DistSimManager.
+     * Based on the simulation's entity list, find the only DistSimManager. The result is cached after the first lookup.
      *
      * @return the manager for distributed simulation
      * @see DistSimManager
      */
     protected DistSimManager getDistSimManager() {
+        if (distSimManager != null) {
+            return distSimManager;
+        }
         List<SimEntity> entities = getSimulation().getEntityList();
         Optional<SimEntity> result = entities.stream().
                 filter(s -> s instanceof DistSimManager).findAny();
@@ -240,21 +370,46 @@ public abstract class DistributedApplication extends CloudSimEntity {
             return null;
         }
 
-        return (DistSimManager) result.get();
+        distSimManager = (DistSimManager) result.get();
+        return distSimManager;
     }
 
     /**
-     * Broadcast message to all of its neighbours.
+     * Broadcast message to all of its neighbours. Each neighbour receives a copy, unless the message is
+     * {@link MessageInterface#isImmutable() immutable}, in which case they all share it.
      *
      * @param message Message to be sent.
      */
     protected void broadcast(MessageInterface message) {
-        for (DistributedApplication n: this.neighbours) {
-            totalMessagesSent++;
-            n.addToQueue(message.clone());
+        boolean shared = message.isImmutable();
+        for (int k = 0; k < getNumberOfNeighbours(); k++) {
+            sendMessage(getNeighbour(k), shared ? message : message.clone());
         }
     }
 
+    /**
+     * Send a message to a single neighbour. Unlike {@link #broadcast(MessageInterface)}, the message is not copied,
+     * thus it must not be modified after sending.
+     *
+     * @param neighbour the receiving application
+     * @param message Message to be sent.
+     */
+    protected void sendMessage(DistributedApplication neighbour, MessageInterface message) {
+        getDistSimManager().getTerminationDetector().messageSent();
+        totalMessagesSent++;
+        totalBytesSent += message.getEncodedSize();
+        neighbour.addToQueue(message, this);
+    }
+
+
+    /**
+     * @param server an edge server
+     * @return the resources available on the server at the start of the current distributed simulation
+     * @see DistSimManager#getCapacitySnapshot(Server)
+     */
+    public CapacitySnapshot getCapacitySnapshot(Server server) {
+        return getDistSimManager().getCapacitySnapshot(server);
+    }
 
     /**
      * @param server the edge server to offload to
@@ -262,10 +417,7 @@ public abstract class DistributedApplication extends CloudSimEntity {
      * @return true if there is enough resources in the server to spin up the virtual machine
      */
     protected boolean checkIfOffloadPossible(Server server, Vm virtualMachine) {
-        ResourceBundle availableResources = server.getAvailableResources();
-        ResourceBundle resourceDemanded = new ResourceBundle(virtualMachine);
-
-        return availableResources.isBounded(resourceDemanded);
+        return server.getCapacitySnapshot().isBounded(new ResourceBundle(virtualMachine));
     }
 
     /**
@@ -281,6 +433,8 @@ public abstract class DistributedApplication extends CloudSimEntity {
         if (!checkIfOffloadPossible(server, virtualMachine)) { return false; }
         broker.setDatacenterMapper((dc, u) -> server);
         virtualMachine.setId(VM_ID++);
+        virtualMachine.addOnHostAllocationListener(info -> server.capacityChanged());
+        virtualMachine.addOnHostDeallocationListener(info -> server.capacityChanged());
         broker.submitVm(virtualMachine);
 
         ArrayList<Cloudlet> cloudletList = new ArrayList<>();
@@ -306,10 +460,269 @@ public abstract class DistributedApplication extends CloudSimEntity {
         while (!ended) {
             orchestrate();
         }
+        retire();
         postProcessing();
         runtime = startTime.until(LocalTime.now(), ChronoUnit.MILLIS)/1000.0d;
     }
 
+    /**
+     * Used only by {@link VirtualTimeEngine}. Virtual time counterpart of the start of {@link #startDistributedAlgorithm()}.
+     *
+     * @param engine the engine running this application
+     * @return true if the application has not ended after initialization
+     */
+    boolean startVirtualAlgorithm(VirtualTimeEngine engine) {
+        virtualTimeEngine = engine;
+        virtualClock = engine.getClock();
+        initialize();
+        return continueVirtualAlgorithm();
+    }
+
+    /**
+     * Used only by {@link VirtualTimeEngine}. Runs a single {@link #orchestrate() orchestration} step.
+     *
+     * @param stepCostInMilliseconds virtual time charged for the step
+     * @return true if the application has not ended after this step
+     */
+    boolean stepVirtualAlgorithm(long stepCostInMilliseconds) {
+        if (virtualWakeUpTime >= 0) { // the wait has timed out
+            virtualClock = virtualWakeUpTime;
+            virtualWakeUpTime = -1;
+        }
+        orchestrate();
+        virtualClock += stepCostInMilliseconds;
+        if (!continueVirtualAlgorithm()) {
+            return false;
+        }
+        if (virtualAwaitTimeout >= 0 && !incomingMessages.hasMail()) {
+            virtualWakeUpTime = virtualAwaitTimeout == NO_TIMEOUT ? NO_TIMEOUT : virtualClock + virtualAwaitTimeout;
+        }
+        virtualAwaitTimeout = -1;
+        return true;
+    }
+
+    /**
+     * Used only by {@link VirtualTimeEngine}, once no event is left, i.e. every application still running waits for
+     * messages without timeout. Runs a last orchestration step, in which the application finds that the distributed
+     * simulation has {@link TerminationDetector terminated}.
+     *
+     * @param clock the virtual time of the last event
+     * @param stepCostInMilliseconds virtual time charged for the step
+     * @return true if the application has still not ended after this step
+     */
+    boolean finishVirtualAlgorithm(long clock, long stepCostInMilliseconds) {
+        virtualClock = Math.max(virtualClock, clock);
+        virtualWakeUpTime = -1;
+        virtualStepGeneration++;
+        return stepVirtualAlgorithm(stepCostInMilliseconds);
+    }
+
+    /**
+     * Used only by {@link VirtualTimeEngine}, after a message is delivered to this application.
+     *
+     * @param deliveryTime the virtual time of the delivery
+     * @return true if this application was waiting for messages and has to be stepped at the delivery time instead
+     */
+    boolean wakeUpVirtualAlgorithm(long deliveryTime) {
+        if (virtualWakeUpTime < 0 || deliveryTime >= virtualWakeUpTime) {
+            return false;
+        }
+        virtualWakeUpTime = -1;
+        virtualClock = Math.max(virtualClock, deliveryTime);
+        virtualStepGeneration++;
+        return true;
+    }
+
+    /**
+     * @return the virtual time of the next orchestration step
+     */
+    long getNextVirtualStepTime() {
+        return virtualWakeUpTime >= 0 ? virtualWakeUpTime : virtualClock;
+    }
+
+    int getVirtualStepGeneration() {
+        return virtualStepGeneration;
+    }
+
+    private boolean continueVirtualAlgorithm() {
+        if (!ended) {
+            return true;
+        }
+        retire();
+        postProcessing();
+        runtime = virtualClock / 1000.0d;
+        return false;
+    }
+
+    /**
+     * Used only by {@link PooledStepEngine}. Pooled counterpart of the start of {@link #startDistributedAlgorithm()}.
+     *
+     * @param engine the engine running this application
+     */
+    void startPooledAlgorithm(PooledStepEngine engine) {
+        pooledStepEngine = engine;
+        pooledStartTime = System.nanoTime();
+        initialize();
+    }
+
+    /**
+     * Used only by {@link PooledStepEngine}. Runs a single {@link #orchestrate() orchestration} step, unless the application
+     * has already ended.
+     */
+    void stepPooledAlgorithm() {
+        if (!ended) {
+            orchestrate();
+        }
+    }
+
+    /**
+     * Used only by {@link PooledStepEngine}, once the application has ended. Pooled counterpart of the end of
+     * {@link #startDistributedAlgorithm()}.
+     */
+    void finishPooledAlgorithm() {
+        retire();
+        postProcessing();
+        runtime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooledStartTime) / 1000.0d;
+    }
+
+    /**
+     * @return the time requested by {@link #sleep(long)} during the last step in a {@link PooledStepEngine}, or -1. Cleared.
+     */
+    long takePooledSleep() {
+        long result = pooledSleep;
+        pooledSleep = -1;
+        return result;
+    }
+
+    /**
+     * @return the timeout requested by {@link #awaitMessages(long)} or {@link #awaitMessagesOrTermination()} during the last
+     * step in a {@link PooledStepEngine} ({@link #NO_TIMEOUT} for the latter), or -1. Cleared.
+     */
+    long takePooledAwaitTimeout() {
+        long result = pooledAwaitTimeout;
+        pooledAwaitTimeout = -1;
+        return result;
+    }
+
+    /**
+     * @return the current time of this application (in milliseconds). Only differences between two calls are meaningful.
+     */
+    protected long currentTimeInMilliseconds() {
+        if (virtualTimeEngine != null) {
+            return virtualClock;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Waits until a message arrives or the timeout has passed, without polling.
+     * <p>When running against the wall clock, the current thread parks on the {@link #incomingMessages mailbox}.
+     * In virtual time, or in a {@link PooledStepEngine}, this returns immediately and the next orchestration step is
+     * scheduled at the earlier of the next delivery and the timeout. Thus, implementations should only call this as the
+     * last action of {@link #orchestrate()}.</p>
+     *
+     * @param timeoutInMilliseconds the maximum time to wait
+     * @see Mailbox#awaitMail(long)
+     */
+    protected void awaitMessages(long timeoutInMilliseconds) {
+        if (virtualTimeEngine != null) {
+            virtualAwaitTimeout = timeoutInMilliseconds;
+            return;
+        }
+        if (pooledStepEngine != null) {
+            pooledAwaitTimeout = timeoutInMilliseconds;
+            return;
+        }
+        incomingMessages.awaitMail(timeoutInMilliseconds);
+    }
+
+    /**
+     * Takes every waiting message out of the {@link #incomingMessages mailbox}. Implementations must take their messages
+     * with this rather than directly from the mailbox, so that the {@link TerminationDetector} knows they are being processed.
+     *
+     * @param target filled from index 0 with the messages. Must have a length of at least {@link Mailbox#getCapacity()}.
+     * @return the number of messages written into target
+     */
+    protected int takeMessages(MessageInterface[] target) {
+        int numberOfMessages = incomingMessages.drainTo(target);
+        if (numberOfMessages > 0) {
+            getDistSimManager().getTerminationDetector().messagesTaken(numberOfMessages, passive);
+            passive = false;
+        }
+        return numberOfMessages;
+    }
+
+    /**
+     * Declares this application passive: it has nothing left to do unless a message arrives. Then waits, without timeout,
+     * until a message arrives or the distributed simulation has terminated (see {@link TerminationDetector}).
+     * <p>In virtual time, this returns immediately, like {@link #awaitMessages(long)}, and the next orchestration step is
+     * scheduled at the next delivery, or once no event is left in the {@link VirtualTimeEngine}. Likewise in a
+     * {@link PooledStepEngine}, the next step runs at the next delivery, or once the simulation has terminated.
+     * Thus, implementations should only call this as the last action of {@link #orchestrate()}.</p>
+     *
+     * @return true if the distributed simulation has terminated, in which case the application should end
+     */
+    protected boolean awaitMessagesOrTermination() {
+        TerminationDetector detector = getDistSimManager().getTerminationDetector();
+        if (!passive) {
+            passive = true;
+            detector.applicationPassive();
+        }
+        if (detector.isTerminated()) {
+            return true;
+        }
+
+        if (virtualTimeEngine != null) {
+            virtualAwaitTimeout = NO_TIMEOUT;
+            return false;
+        }
+        if (pooledStepEngine != null) {
+            pooledAwaitTimeout = NO_TIMEOUT;
+            return false;
+        }
+        incomingMessages.awaitMail(-1);
+        return detector.isTerminated();
+    }
+
+    /**
+     * Called once this application has ended: it no longer counts as active, and its waiting messages are discarded.
+     */
+    private void retire() {
+        TerminationDetector detector = getDistSimManager().getTerminationDetector();
+        if (!passive) {
+            passive = true;
+            detector.applicationPassive();
+        }
+        retired = true;
+        detector.messagesDiscarded(incomingMessages.discardAll());
+    }
+
+    /**
+     * Waits for the given amount of time during the distributed algorithm.
+     * <p>When running against the wall clock, the current thread sleeps.
+     * In virtual time, only the local clock of this application advances. In a {@link PooledStepEngine}, the next step
+     * runs once the time has passed, without holding on to a thread. Thus, implementations should only call this
+     * as the last action of {@link #initialize()} or {@link #orchestrate()}.</p>
+     *
+     * @param millis the time to wait (in milliseconds)
+     * @see VirtualTimeEngine
+     */
+    protected void sleep(long millis) {
+        if (virtualTimeEngine != null) {
+            virtualClock += millis;
+            return;
+        }
+        if (pooledStepEngine != null) {
+            pooledSleep = millis;
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void shutdown() {
 //        super.shutdown();
@@ -354,7 +767,20 @@ public abstract class DistributedApplication extends CloudSimEntity {
      * Resets the relevant variables for a distributed simulation to start anew.
      */
     public void reset() {
+        virtualTimeEngine = null;
+        pooledStepEngine = null;
+        pooledAwaitTimeout = -1;
+        pooledSleep = -1;
+        virtualClock = 0;
+        virtualAwaitTimeout = -1;
+        virtualWakeUpTime = -1;
+        passive = false;
+        retired = false;
+        incomingMessages.reset(getDistSimManager().getNumberOfSlots()); //could be from previous distributed simulation run, thus clear all
         totalMessagesSent = 0;
+        totalBytesSent = 0;
+        budgetedSearches = 0;
+        budgetExhaustions = 0;
         ended = false;
         failed = false;
     }
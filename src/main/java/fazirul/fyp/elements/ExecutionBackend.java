@@ -0,0 +1,87 @@
+package fazirul.fyp.elements;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The threads used by {@link DistSimManager} to run the distributed algorithm of each application against the wall clock.
+ *
+ * <p>{@link #PLATFORM_POOL} runs any number of applications on a bounded number of OS threads, on every runtime, and is
+ * the backend for tens of thousands of applications. {@link #VIRTUAL_THREADS} only does so on Java 21 or later; the
+ * project is compiled for an older release, thus virtual threads are looked up when the simulation runs.</p>
+ *
+ * @see DistSimManager#setExecutionBackend(ExecutionBackend)
+ */
+public enum ExecutionBackend {
+    /**
+     * One virtual thread per application. Virtual threads are cheap to create and do not hold on to an OS thread while
+     * sleeping or waiting for messages, thus tens of thousands of applications can run at the same time.
+     *
+     * <p>Virtual threads need a Java 21 or later runtime. On older runtimes, this falls back to {@link #PLATFORM_POOL}.</p>
+     */
+    VIRTUAL_THREADS,
+
+    /**
+     * A fixed pool of platform threads, run by a {@link PooledStepEngine}. Each application runs one orchestration step at
+     * a time and gives its thread back while sleeping or waiting for messages, thus the number of OS threads is the size
+     * of the pool, however many applications take part.
+     *
+     * @see DistSimManager#setPlatformPoolSize(int)
+     */
+    PLATFORM_POOL;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionBackend.class.getSimpleName());
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), looked up reflectively so that the project still compiles and runs
+     * on Java 17. Null if not supported by the runtime.
+     */
+    private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private static boolean fallbackLogged = false;
+
+    /**
+     * @return the backend actually used: {@link #PLATFORM_POOL} instead of {@link #VIRTUAL_THREADS} if the runtime does not
+     * support virtual threads
+     */
+    ExecutionBackend resolve() {
+        if (this == PLATFORM_POOL || VIRTUAL_THREAD_EXECUTOR_FACTORY != null) {
+            return this;
+        }
+        if (!fallbackLogged) {
+            fallbackLogged = true;
+            LOGGER.warn("Virtual threads are not supported by this Java runtime, using the platform thread pool.");
+        }
+        return PLATFORM_POOL;
+    }
+
+    /**
+     * Only for {@link #VIRTUAL_THREADS}, as {@link #PLATFORM_POOL} is run by a {@link PooledStepEngine}.
+     *
+     * @return a new executor with one virtual thread per task, for a single distributed simulation. Must be shut down
+     * after use.
+     * @throws IllegalStateException if virtual threads are not supported, see {@link #resolve()}
+     */
+    ExecutorService createVirtualThreadExecutor() {
+        if (this != VIRTUAL_THREADS || VIRTUAL_THREAD_EXECUTOR_FACTORY == null) {
+            throw new IllegalStateException("Virtual threads are not supported by this Java runtime.");
+        }
+        try {
+            return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor.", e);
+        }
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package fazirul.fyp.elements;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Incoming messages of a {@link DistributedApplication}. Many threads may post messages, but only the owning application
+ * takes them out (multiple producers, single consumer).
+ *
+ * <p>The mailbox has one slot per sender, identified by {@link MessageInterface#getSenderID()}. A newer message overwrites
+ * the older one still in the slot (or is combined with it, see {@link MessageInterface#coalesce(MessageInterface)}),
+ * thus only the latest message of each sender is kept. Senders with a waiting message
+ * are marked in a bitmap, so {@link #drainTo(MessageInterface[])} only visits those slots and does not allocate.</p>
+ *
+ * <p>No locks are used. The consumer can park in {@link #awaitMail(long)} instead of polling, until a message arrives or
+ * the mailbox is {@link #close() closed}. A consumer that must not hold on to a thread while waiting registers a callback
+ * with {@link #awaitMail(Runnable)} instead.</p>
+ */
+public class Mailbox {
+    private AtomicReferenceArray<MessageInterface> slots = new AtomicReferenceArray<>(0);
+
+    /**
+     * Bit i is set once a message from sender i is waiting in its slot.
+     */
+    private AtomicLongArray pendingSenders = new AtomicLongArray(0);
+
+    /**
+     * Number of slots holding a message.
+     */
+    private final AtomicInteger occupiedSlots = new AtomicInteger();
+
+    /**
+     * The consumer thread parked in {@link #awaitMail(long)}, if any.
+     */
+    private volatile Thread waitingConsumer = null;
+
+    /**
+     * The callback registered by {@link #awaitMail(Runnable)}, if any. Taken out by whoever runs or cancels it, thus it
+     * runs at most once.
+     */
+    private final AtomicReference<Runnable> waitingCallback = new AtomicReference<>();
+
+    /**
+     * Set once the distributed simulation has terminated. Releases the consumer from {@link #awaitMail(long)}.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Removes all messages and resizes the mailbox. Must not be called while messages are being posted.
+     *
+     * @param numberOfSenders the number of senders (sender IDs range from 0 to numberOfSenders - 1)
+     */
+    public void reset(int numberOfSenders) {
+        slots = new AtomicReferenceArray<>(numberOfSenders);
+        pendingSenders = new AtomicLongArray((numberOfSenders + Long.SIZE - 1) / Long.SIZE);
+        occupiedSlots.set(0);
+        waitingCallback.set(null);
+        closed = false;
+    }
+
+    /**
+     * @return the number of senders this mailbox has a slot for
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Puts the message into the slot of its sender. If the slot already holds a message, both are
+     * {@link MessageInterface#coalesce(MessageInterface) coalesced}.
+     *
+     * @param message the message
+     * @return true if the message took an empty slot. False if it was combined with the message already waiting in the slot,
+     * or dropped because a newer message of the same sender is waiting. Either way, one message fewer is waiting than were posted.
+     */
+    public boolean addMessage(MessageInterface message) {
+        int sender = message.getSenderID();
+        MessageInterface previous;
+        MessageInterface replacement;
+        do {
+            previous = slots.get(sender);
+            replacement = previous == null ? message : message.coalesce(previous);
+            if (replacement == previous) {
+                return false;
+            }
+        } while (!slots.compareAndSet(sender, previous, replacement));
+        if (previous != null) {
+            return false; //the bit is already set, and the consumer has already been woken up
+        }
+
+        occupiedSlots.incrementAndGet();
+        long bit = 1L << (sender % Long.SIZE);
+        int word = sender / Long.SIZE;
+        if ((pendingSenders.get(word) & bit) == 0) {
+            pendingSenders.getAndAccumulate(word, bit, (w, b) -> w | b);
+        }
+
+        wakeUpConsumer();
+        return true;
+    }
+
+    /**
+     * Takes every waiting message out of the mailbox. Only for use by the owner of the mailbox.
+     *
+     * @param target filled from index 0 with the messages. Must have a length of at least {@link #getCapacity()}.
+     * @return the number of messages written into target
+     */
+    public int drainTo(MessageInterface[] target) {
+        int count = 0;
+        for (int word = 0; word < pendingSenders.length(); word++) {
+            if (pendingSenders.get(word) == 0) { continue; }
+            long bits = pendingSenders.getAndSet(word, 0);
+            while (bits != 0) {
+                int sender = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                MessageInterface message = slots.getAndSet(sender, null);
+                if (message != null) { // may have been taken already by an earlier drain
+                    occupiedSlots.decrementAndGet();
+                    target[count++] = message;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes every waiting message. Unlike {@link #drainTo(MessageInterface[])}, this may be called by any thread,
+     * e.g. to dispose of messages posted to an application that has ended.
+     *
+     * @return the number of messages removed
+     */
+    public int discardAll() {
+        int count = 0;
+        for (int word = 0; word < pendingSenders.length(); word++) {
+            if (pendingSenders.get(word) == 0) { continue; }
+            long bits = pendingSenders.getAndSet(word, 0);
+            while (bits != 0) {
+                int sender = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (slots.getAndSet(sender, null) != null) {
+                    occupiedSlots.decrementAndGet();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Releases the consumer from {@link #awaitMail(long)}, now and in future calls until the next {@link #reset(int)}.
+     */
+    public void close() {
+        closed = true;
+        wakeUpConsumer();
+    }
+
+    private void wakeUpConsumer() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        Runnable callback = waitingCallback.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return true if at least one message is waiting
+     */
+    public boolean hasMail() {
+        return occupiedSlots.get() > 0;
+    }
+
+    /**
+     * Parks the calling thread until a message is waiting, the timeout has passed or the mailbox is {@link #close() closed}.
+     * Only for use by the owner of the mailbox.
+     *
+     * @param timeoutInMilliseconds the maximum time to wait, negative to wait without timeout
+     * @return true if a message is waiting
+     */
+    public boolean awaitMail(long timeoutInMilliseconds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMilliseconds);
+        waitingConsumer = Thread.currentThread();
+        try {
+            while (!hasMail() && !closed) {
+                if (timeoutInMilliseconds < 0) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return hasMail();
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Registers a callback to run once a message is waiting or the mailbox is {@link #close() closed}, without parking
+     * the calling thread. The callback runs on the thread posting the message or closing the mailbox, thus it should only
+     * hand the work over, e.g. to an executor. Only for use by the owner of the mailbox, with at most one callback at a time.
+     *
+     * @param callback run at most once, unless {@link #cancelAwaitMail(Runnable) cancelled} first
+     * @return false if a message is already waiting or the mailbox is closed, in which case the callback is not registered
+     * and will not run
+     */
+    public boolean awaitMail(Runnable callback) {
+        waitingCallback.set(callback);
+        if ((hasMail() || closed) && waitingCallback.compareAndSet(callback, null)) {
+            return false;
+        }
+        return true; //a message posted from now on, or since the callback was set, runs it
+    }
+
+    /**
+     * @param callback the callback registered with {@link #awaitMail(Runnable)}
+     * @return true if the callback was cancelled and will not run, false if it has already run or is running
+     */
+    public boolean cancelAwaitMail(Runnable callback) {
+        return waitingCallback.compareAndSet(callback, null);
+    }
+}
@@ -0,0 +1,145 @@
+package fazirul.fyp.elements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The applications participating in the distributed simulations of a {@link DistSimManager}.
+ *
+ * <p>Each application is given a stable slot, which becomes its {@link DistributedApplication#getIndex() index}
+ * and its node in the topology. The slot does not change while the application participates, and the slot of an
+ * application that has left is reused by the next application to join. Joining and leaving are O(1).</p>
+ */
+class Membership {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The application in each slot, null if the slot is free.
+     */
+    private DistributedApplication[] slots = new DistributedApplication[INITIAL_CAPACITY];
+
+    /**
+     * Number of slots ever used. Slots from 0 to numberOfSlots - 1 are either used or in {@link #freeSlots}.
+     */
+    private int numberOfSlots = 0;
+
+    /**
+     * Stack of free slots below {@link #numberOfSlots}.
+     */
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int numberOfFreeSlots = 0;
+
+    /**
+     * The participating applications, in no particular order. Removal swaps the last application into the removed position.
+     */
+    private final ArrayList<DistributedApplication> members = new ArrayList<>();
+
+    /**
+     * Position in {@link #members} of the application in each slot.
+     */
+    private int[] positionOfSlot = new int[INITIAL_CAPACITY];
+
+    /**
+     * @param app the application joining. Nothing is done if it is already participating.
+     * @return the slot of the application
+     */
+    int join(DistributedApplication app) {
+        if (contains(app)) {
+            return app.getIndex();
+        }
+
+        int slot;
+        if (numberOfFreeSlots > 0) {
+            slot = freeSlots[--numberOfFreeSlots];
+        } else {
+            slot = numberOfSlots++;
+            if (slot == slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+                positionOfSlot = Arrays.copyOf(positionOfSlot, slots.length);
+            }
+        }
+
+        slots[slot] = app;
+        positionOfSlot[slot] = members.size();
+        members.add(app);
+        app.setIndex(slot);
+        return slot;
+    }
+
+    /**
+     * @param app the application leaving
+     * @return the former slot of the application, -1 if it was not participating
+     */
+    int leave(DistributedApplication app) {
+        if (!contains(app)) {
+            return -1;
+        }
+
+        int slot = app.getIndex();
+        int position = positionOfSlot[slot];
+        DistributedApplication last = members.remove(members.size() - 1);
+        if (last != app) {
+            members.set(position, last);
+            positionOfSlot[last.getIndex()] = position;
+        }
+
+        slots[slot] = null;
+        if (numberOfFreeSlots == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[numberOfFreeSlots++] = slot;
+        app.setIndex(-1);
+        return slot;
+    }
+
+    boolean contains(DistributedApplication app) {
+        int slot = app.getIndex();
+        return slot >= 0 && slot < numberOfSlots && slots[slot] == app;
+    }
+
+    /**
+     * Gives the participating applications the slots 0 to {@link #size()} - 1, in the order of {@link #getMembers()}.
+     * Only to be used when the topology is generated again, as every slot may change.
+     */
+    void compact() {
+        Arrays.fill(slots, 0, numberOfSlots, null);
+        numberOfFreeSlots = 0;
+        numberOfSlots = members.size();
+        for (int position = 0; position < members.size(); position++) {
+            slots[position] = members.get(position);
+            positionOfSlot[position] = position;
+            members.get(position).setIndex(position);
+        }
+    }
+
+    /**
+     * @param slot a slot
+     * @return the application in the slot, null if the slot is free
+     */
+    DistributedApplication get(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * @return the number of slots, used or free. Every slot index is lower.
+     */
+    int getNumberOfSlots() {
+        return numberOfSlots;
+    }
+
+    /**
+     * @return the number of participating applications
+     */
+    int size() {
+        return members.size();
+    }
+
+    /**
+     * @return the participating applications, in no particular order
+     */
+    List<DistributedApplication> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+}
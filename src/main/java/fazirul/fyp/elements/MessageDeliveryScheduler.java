@@ -0,0 +1,169 @@
+package fazirul.fyp.elements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers messages between {@link DistributedApplication applications} after their network latency,
+ * when the distributed simulation runs against the wall clock.
+ *
+ * <p>Pending messages are kept in a single {@link DelayQueue} served by a small, fixed pool of worker threads.
+ * Thus, no thread is created per message. There is one scheduler per {@link DistSimManager}.</p>
+ *
+ * <p>The scheduler also keeps track of the delivery lag (how late a message is delivered compared to its due time)
+ * and of the queue depth, which can be read with the getters and cleared with {@link #resetStatistics()}.</p>
+ */
+public class MessageDeliveryScheduler {
+    private static final String THREAD_NAME = "MessageDelivery_";
+
+    private final DelayQueue<ScheduledDelivery> queue = new DelayQueue<>();
+
+    private final int numberOfThreads;
+
+    /**
+     * Worker threads are only started on the first scheduled message.
+     */
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong totalLagInNanos = new AtomicLong();
+    private final AtomicLong maxLagInNanos = new AtomicLong();
+
+    /**
+     * @param numberOfThreads the number of worker threads delivering messages
+     */
+    public MessageDeliveryScheduler(int numberOfThreads) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Message delivery scheduler needs at least one thread.");
+        }
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Delivers the message into the incoming messages of the receiver once the latency has passed.
+     * Messages without latency are delivered immediately by the calling thread.
+     *
+     * @param receiver the application receiving the message
+     * @param message the message
+     * @param latencyInMilliseconds the network latency
+     */
+    public void schedule(DistributedApplication receiver, MessageInterface message, long latencyInMilliseconds) {
+        if (latencyInMilliseconds <= 0) {
+            deliver(receiver, message, 0);
+            return;
+        }
+
+        startWorkers();
+        long dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyInMilliseconds);
+        int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        queue.add(new ScheduledDelivery(receiver, message, dueTime));
+    }
+
+    private synchronized void startWorkers() {
+        if (!workers.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread worker = new Thread(this::serve, THREAD_NAME + i);
+            worker.setDaemon(true); // must not keep the JVM alive after the simulation ends
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void serve() {
+        while (true) {
+            ScheduledDelivery delivery;
+            try {
+                delivery = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            queueDepth.decrementAndGet();
+            deliver(delivery.receiver, delivery.message, System.nanoTime() - delivery.dueTime);
+        }
+    }
+
+    private void deliver(DistributedApplication receiver, MessageInterface message, long lagInNanos) {
+        receiver.receive(message);
+        deliveredCount.incrementAndGet();
+        totalLagInNanos.addAndGet(lagInNanos);
+        maxLagInNanos.accumulateAndGet(lagInNanos, Math::max);
+    }
+
+    /**
+     * @return the number of messages waiting for their latency to pass
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return the highest number of messages waiting at the same time, since the last {@link #resetStatistics()}
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of messages delivered since the last {@link #resetStatistics()}
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * @return the average delivery lag (in milliseconds) since the last {@link #resetStatistics()}
+     */
+    public double getAverageLagInMilliseconds() {
+        long count = deliveredCount.get();
+        return count == 0 ? 0 : totalLagInNanos.get() / (count * 1_000_000.0d);
+    }
+
+    /**
+     * @return the highest delivery lag (in milliseconds) since the last {@link #resetStatistics()}
+     */
+    public double getMaxLagInMilliseconds() {
+        return maxLagInNanos.get() / 1_000_000.0d;
+    }
+
+    public void resetStatistics() {
+        maxQueueDepth.set(queueDepth.get());
+        deliveredCount.set(0);
+        totalLagInNanos.set(0);
+        maxLagInNanos.set(0);
+    }
+
+    /**
+     * A message waiting in the {@link #queue} until its due time.
+     */
+    private static class ScheduledDelivery implements Delayed {
+        final DistributedApplication receiver;
+        final MessageInterface message;
+        final long dueTime;
+
+        ScheduledDelivery(DistributedApplication receiver, MessageInterface message, long dueTime) {
+            this.receiver = receiver;
+            this.message = message;
+            this.dueTime = dueTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueTime, ((ScheduledDelivery) other).dueTime);
+        }
+    }
+}
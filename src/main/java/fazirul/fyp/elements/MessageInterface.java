@@ -2,4 +2,45 @@ package fazirul.fyp.elements;
 
 public interface MessageInterface {
     MessageInterface clone();
+
+    /**
+     * @return true if the message is never modified once sent, thus {@link DistributedApplication#broadcast(MessageInterface)}
+     * sends the same instance to every neighbour instead of a {@link #clone()} each
+     */
+    default boolean isImmutable() {
+        return false;
+    }
+
+    /**
+     * @return the index of the sending application
+     * @see DistributedApplication#getIndex()
+     */
+    int getSenderID();
+
+    /**
+     * Used by the {@link Mailbox} to keep only the latest message of each sender.
+     *
+     * @param other an earlier received message of the same sender
+     * @return true if this message should replace the other
+     */
+    default boolean isNewerThan(MessageInterface other) {
+        return true;
+    }
+
+    /**
+     * Used by the {@link Mailbox} when this message arrives while an earlier message of the same sender is still waiting.
+     *
+     * @param waiting the message of the same sender still waiting in the mailbox
+     * @return the message to keep in the mailbox. By default, the newer of the two.
+     */
+    default MessageInterface coalesce(MessageInterface waiting) {
+        return isNewerThan(waiting) ? this : waiting;
+    }
+
+    /**
+     * @return the size of this message (in bytes) if it were encoded for the network, or 0 if unknown
+     */
+    default int getEncodedSize() {
+        return 0;
+    }
 }
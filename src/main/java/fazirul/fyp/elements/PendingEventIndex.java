@@ -0,0 +1,66 @@
+package fazirul.fyp.elements;
+
+import java.util.TreeMap;
+
+/**
+ * Index of the {@link DistributedSimTags#START_ALGORITHM_EVENT} and {@link DistributedSimTags#ARRIVAL_EVENT} sent by
+ * {@link DistributedApplication applications} that have not been processed yet, keyed by event time.
+ *
+ * <p>Events are added when they are sent and removed when they are processed, so the index answers the questions of
+ * {@link DistSimManager} and {@link DistributedApplication} in O(log n), instead of a scan of the whole future event
+ * list of the simulation.</p>
+ */
+class PendingEventIndex {
+    /**
+     * Number of pending START_ALGORITHM_EVENTs at each time.
+     */
+    private final TreeMap<Double, Integer> startAlgorithmEvents = new TreeMap<>();
+
+    /**
+     * Number of pending ARRIVAL_EVENTs at each time.
+     */
+    private final TreeMap<Double, Integer> arrivalEvents = new TreeMap<>();
+
+    void addStartAlgorithmEvent(double time) {
+        startAlgorithmEvents.merge(time, 1, Integer::sum);
+    }
+
+    void removeStartAlgorithmEvent(double time) {
+        remove(startAlgorithmEvents, time);
+    }
+
+    void addArrivalEvent(double time) {
+        arrivalEvents.merge(time, 1, Integer::sum);
+    }
+
+    void removeArrivalEvent(double time) {
+        remove(arrivalEvents, time);
+    }
+
+    /**
+     * @param time the event time
+     * @return the number of pending START_ALGORITHM_EVENTs at exactly this time
+     */
+    int countStartAlgorithmEventsAt(double time) {
+        return startAlgorithmEvents.getOrDefault(time, 0);
+    }
+
+    /**
+     * An event invalidates the result of the current distributed simulation for an application offloading at the given time,
+     * if it is a START_ALGORITHM_EVENT at or before that time, or an ARRIVAL_EVENT whose warm-up ends at or before that time.
+     *
+     * @param offloadTime the time at which an application would offload
+     * @return true if there is at least one such event
+     * @see DistributedApplication#WARM_UP_TIME
+     */
+    boolean hasInvalidationEventBefore(double offloadTime) {
+        if (!startAlgorithmEvents.isEmpty() && startAlgorithmEvents.firstKey() <= offloadTime) {
+            return true;
+        }
+        return !arrivalEvents.isEmpty() && arrivalEvents.firstKey() + DistributedApplication.WARM_UP_TIME <= offloadTime;
+    }
+
+    private static void remove(TreeMap<Double, Integer> events, double time) {
+        events.computeIfPresent(time, (t, count) -> count > 1 ? count - 1 : null);
+    }
+}
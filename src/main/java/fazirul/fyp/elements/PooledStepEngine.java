@@ -0,0 +1,180 @@
+package fazirul.fyp.elements;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a single distributed simulation against the wall clock on a fixed pool of platform threads, however many
+ * {@link DistributedApplication applications} take part.
+ *
+ * <p>Like the {@link VirtualTimeEngine}, each application is run one orchestration step at a time, and waiting does not
+ * block a thread: after a step that ends with {@link DistributedApplication#awaitMessages(long)} or
+ * {@link DistributedApplication#awaitMessagesOrTermination()}, the application registers a callback on its
+ * {@link Mailbox} and gives its thread back. It is submitted to the pool again when a message arrives, the wait times out
+ * or the {@link TerminationDetector} closes the mailboxes. A {@link DistributedApplication#sleep(long) sleep} submits it
+ * again once the time has passed. Unlike in virtual time, the time is that of the wall clock, thus messages are delivered
+ * by the {@link MessageDeliveryScheduler}.</p>
+ *
+ * <p>An application is never stepped by two threads at once: at any time, it is either running, queued in the pool, or
+ * waiting for a single callback or timer.</p>
+ *
+ * @see ExecutionBackend#PLATFORM_POOL
+ */
+class PooledStepEngine {
+    private static final String TIMER_THREAD_NAME = "PooledStepTimer";
+
+    private final int numberOfThreads;
+
+    private ExecutorService pool;
+
+    /**
+     * Times out waits and ends sleeps, by submitting the application to the {@link #pool} again.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * Counted down as each application ends.
+     */
+    private CountDownLatch running;
+
+    private final AtomicInteger threadsInUse = new AtomicInteger();
+    private final AtomicInteger peakThreadsInUse = new AtomicInteger();
+    private final AtomicLong numberOfSteps = new AtomicLong();
+
+    /**
+     * @param numberOfThreads the number of platform threads running the applications
+     */
+    PooledStepEngine(int numberOfThreads) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("Platform pool needs at least one thread.");
+        }
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Runs the distributed algorithm of every application until all of them have ended.
+     *
+     * @param applications the applications participating in this run
+     */
+    void run(List<DistributedApplication> applications) {
+        pool = Executors.newFixedThreadPool(numberOfThreads);
+        ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, TIMER_THREAD_NAME);
+            thread.setDaemon(true); // must not keep the JVM alive after the simulation ends
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        timer = scheduledExecutor;
+        running = new CountDownLatch(applications.size());
+
+        try {
+            for (DistributedApplication app : applications) {
+                pool.execute(() -> runStep(app, true));
+            }
+            running.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+            timer.shutdownNow(); //only timeouts of waits already ended by a message are left
+        }
+    }
+
+    /**
+     * Runs the start or the next orchestration step of the application, then decides when to run it again.
+     */
+    private void runStep(DistributedApplication app, boolean start) {
+        peakThreadsInUse.accumulateAndGet(threadsInUse.incrementAndGet(), Math::max);
+        try {
+            if (start) {
+                app.startPooledAlgorithm(this);
+            } else {
+                app.stepPooledAlgorithm();
+            }
+            numberOfSteps.incrementAndGet();
+
+            long sleep = app.takePooledSleep();
+            if (sleep > 0) {
+                timer.schedule(() -> pool.execute(() -> continueAfterSleep(app)), sleep, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (app.ended) {
+                finish(app);
+                return;
+            }
+            long timeout = app.takePooledAwaitTimeout();
+            if (timeout < 0) {
+                pool.execute(() -> runStep(app, false)); //queued behind the others, so that none of them starves
+            } else {
+                awaitMail(app, timeout);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            running.countDown();
+        } finally {
+            threadsInUse.decrementAndGet();
+        }
+    }
+
+    private void continueAfterSleep(DistributedApplication app) {
+        if (app.ended) {
+            finish(app);
+        } else {
+            runStep(app, false);
+        }
+    }
+
+    /**
+     * Steps the application again at the first of: a message arriving, the timeout passing, or the mailbox closing.
+     */
+    private void awaitMail(DistributedApplication app, long timeoutInMilliseconds) {
+        Runnable wakeUp = () -> pool.execute(() -> runStep(app, false)); //a new instance for each wait
+        if (!app.incomingMessages.awaitMail(wakeUp)) {
+            wakeUp.run(); //already a message, or the simulation has terminated
+            return;
+        }
+        if (timeoutInMilliseconds != DistributedApplication.NO_TIMEOUT) {
+            timer.schedule(() -> {
+                if (app.incomingMessages.cancelAwaitMail(wakeUp)) {
+                    wakeUp.run();
+                }
+            }, timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void finish(DistributedApplication app) {
+        try {
+            app.finishPooledAlgorithm();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            running.countDown();
+        }
+    }
+
+    int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /**
+     * @return the peak number of pool threads running an application at the same time, at most {@link #getNumberOfThreads()}
+     */
+    int getPeakThreadsInUse() {
+        return peakThreadsInUse.get();
+    }
+
+    /**
+     * @return the number of steps run, including the start of each application
+     */
+    long getNumberOfSteps() {
+        return numberOfSteps.get();
+    }
+}
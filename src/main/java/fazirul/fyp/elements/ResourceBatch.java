@@ -0,0 +1,130 @@
+package fazirul.fyp.elements;
+
+import java.util.Arrays;
+
+/**
+ * A batch of resource demands packed in one int array per resource type (a column), so that the demands are checked
+ * and deducted without creating a {@link ResourceBundle} per demand.
+ *
+ * <p>The columns are the {@link #CPU}, {@link #BANDWIDTH} and {@link #MEMORY} of a ResourceBundle. Residual resources
+ * are given as int arrays with one element per column, in the same order.</p>
+ */
+public class ResourceBatch {
+    /**
+     * Columns of the resource types of a {@link ResourceBundle}, in the order of its constructor.
+     */
+    public static final int CPU = 0;
+    public static final int BANDWIDTH = 1;
+    public static final int MEMORY = 2;
+    public static final int RESOURCE_BUNDLE_DIMENSIONS = 3;
+
+    private int[][] columns;
+    private int size;
+
+    /**
+     * @param initialCapacity the expected number of demands
+     */
+    public ResourceBatch(int initialCapacity) {
+        columns = new int[RESOURCE_BUNDLE_DIMENSIONS][Math.max(initialCapacity, 1)];
+        size = 0;
+    }
+
+    private ResourceBatch(int size, int[][] columns) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * Creates a batch over existing columns, without copying them. Changes to the arrays are seen by the batch.
+     *
+     * @param size the number of demands
+     * @param cpu the CPU of each demand, with at least size elements
+     * @param bandwidth the bandwidth of each demand, with at least size elements
+     * @param memory the memory of each demand, with at least size elements
+     * @return the batch
+     */
+    public static ResourceBatch wrap(int size, int[] cpu, int[] bandwidth, int[] memory) {
+        return new ResourceBatch(size, new int[][] {cpu, bandwidth, memory});
+    }
+
+    /**
+     * @param resources a resource
+     * @return the resource as an array with one element per column
+     */
+    public static int[] toArray(ResourceBundle resources) {
+        int[] result = new int[RESOURCE_BUNDLE_DIMENSIONS];
+        result[CPU] = resources.getCPU();
+        result[BANDWIDTH] = resources.getBandwidth();
+        result[MEMORY] = resources.getMemory();
+        return result;
+    }
+
+    /**
+     * @param resources one element per column, as from {@link #toArray(ResourceBundle)}
+     * @return the ResourceBundle of the columns
+     */
+    public static ResourceBundle toResourceBundle(int[] resources) {
+        return new ResourceBundle(resources[CPU], resources[BANDWIDTH], resources[MEMORY]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int i, int dimension) {
+        return columns[dimension][i];
+    }
+
+    /**
+     * Adds a demand at the end of the batch.
+     * @param demand one element per column
+     */
+    public void add(int... demand) {
+        if (size == columns[0].length) {
+            for (int d = 0; d < columns.length; d++) {
+                columns[d] = Arrays.copyOf(columns[d], size * 2);
+            }
+        }
+        for (int d = 0; d < columns.length; d++) {
+            columns[d][size] = demand[d];
+        }
+        size++;
+    }
+
+    /**
+     * @param i a demand
+     * @param residual one element per column
+     * @return true if the demand fits within the residual resources
+     * @see ResourceBundle#isBounded(ResourceBundle)
+     */
+    public boolean fits(int i, int[] residual) {
+        for (int d = 0; d < columns.length; d++) {
+            if (columns[d][i] > residual[d]) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Deducts a demand from the residual resources.
+     * @param i a demand
+     * @param residual one element per column, modified
+     * @see ResourceBundle#deductResources(ResourceBundle)
+     */
+    public void deduct(int i, int[] residual) {
+        for (int d = 0; d < columns.length; d++) {
+            residual[d] -= columns[d][i];
+        }
+    }
+
+    /**
+     * Adds a demand back to the residual resources, undoing {@link #deduct(int, int[])}.
+     * @param i a demand
+     * @param residual one element per column, modified
+     * @see ResourceBundle#addResources(ResourceBundle)
+     */
+    public void release(int i, int[] residual) {
+        for (int d = 0; d < columns.length; d++) {
+            residual[d] += columns[d][i];
+        }
+    }
+}
@@ -8,10 +8,6 @@ import org.cloudbus.cloudsim.vms.Vm;
 import java.text.MessageFormat;
 
 public class ResourceBundle {
-    private static final int CPU = 1;
-    private static final int MEMORY = 2;
-    private static final int BANDWIDTH = 3;
-
     private int cpu;
     private int bandwidth;
     private int memory;
@@ -73,25 +69,34 @@ public class ResourceBundle {
     }
 
     public double normalise(ResourceBundle residualResources) {
-        double quadraticSum = 0;
-        quadraticSum += this.getQuadraticValue(residualResources, CPU);
-        quadraticSum += this.getQuadraticValue(residualResources, MEMORY);
-        quadraticSum += this.getQuadraticValue(residualResources, BANDWIDTH);
-
-        return Math.sqrt(quadraticSum);
-    }
-
-    private double getQuadraticValue(ResourceBundle residualResources, int type) {
-        double average = (residualResources.bandwidth + residualResources.cpu + residualResources.memory)/3.0;
-        return switch (type) {
-            case CPU -> //cpu
-                    Math.pow(this.cpu * (average / residualResources.cpu), 2);
-            case MEMORY -> //memory
-                    Math.pow(this.memory * (average / residualResources.memory), 2);
-            case BANDWIDTH -> //bandwidth
-                    Math.pow(this.bandwidth * (average / residualResources.bandwidth), 2);
-            default -> 0;
-        };
+        return normalise(this.cpu, this.bandwidth, this.memory, residualResources);
+    }
+
+    /**
+     * Same as {@link #normalise(ResourceBundle)}, for a resource given by its components instead of a ResourceBundle.
+     */
+    public static double normalise(int cpu, int bandwidth, int memory, ResourceBundle residualResources) {
+        return normalise(cpu, bandwidth, memory, residualResources.cpu, residualResources.bandwidth, residualResources.memory);
+    }
+
+    /**
+     * Same as {@link #normalise(ResourceBundle)}, for resources given by their components.
+     */
+    public static double normalise(int cpu, int bandwidth, int memory, int residualCPU, int residualBandwidth, int residualMemory) {
+        double average = (residualBandwidth + residualCPU + residualMemory)/3.0;
+        return normalise(cpu, bandwidth, memory, average / residualCPU, average / residualBandwidth, average / residualMemory);
+    }
+
+    /**
+     * The normalisation kernel: each component is scaled by the average of the residual resources over the residual
+     * resource of the same type. The scales only depend on the residual resources, thus can be computed once for many
+     * normalisations (see {@link CapacitySnapshot}).
+     */
+    static double normalise(int cpu, int bandwidth, int memory, double cpuScale, double bandwidthScale, double memoryScale) {
+        double scaledCPU = cpu * cpuScale;
+        double scaledMemory = memory * memoryScale;
+        double scaledBandwidth = bandwidth * bandwidthScale;
+        return Math.sqrt(scaledCPU * scaledCPU + scaledMemory * scaledMemory + scaledBandwidth * scaledBandwidth);
     }
 
     public ResourceBundle clone() {
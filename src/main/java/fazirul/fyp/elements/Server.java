@@ -1,15 +1,20 @@
 package fazirul.fyp.elements;
 
+import org.cloudbus.cloudsim.cloudlets.Cloudlet;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.Simulation;
 import org.cloudbus.cloudsim.datacenters.DatacenterSimple;
 import org.cloudbus.cloudsim.hosts.Host;
 import org.cloudbus.cloudsim.hosts.HostSimple;
 import org.cloudbus.cloudsim.resources.Pe;
 import org.cloudbus.cloudsim.resources.PeSimple;
+import org.cloudbus.cloudsim.vms.Vm;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public class Server extends DatacenterSimple {
     private static final String DEFAULT_NAME = "Server_";
@@ -18,11 +23,61 @@ public class Server extends DatacenterSimple {
     private final static int HOST_DEFAULT_MIPS = 1000;
     private final ResourceBundle totalResources;
 
+    /**
+     * The servers of each simulation, in order of creation. The position of a server is its {@link #index}.
+     */
+    private static final Map<Simulation, List<Server>> REGISTRY = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Dense index of this server among the servers of its simulation, from 0 to {@link #getNumberOfServers(Simulation)} - 1.
+     * Used to keep per-server information in arrays instead of maps keyed by Server.
+     */
+    private final int index;
+
+    /**
+     * Incremented each time a virtual machine is allocated to or deallocated from the host of this server.
+     * @see #capacityChanged()
+     */
+    private long capacityVersion = 0;
+
+    /**
+     * The resources available, as of {@link #capacityVersion}. Read again from the host once the version changes.
+     */
+    private CapacitySnapshot capacitySnapshot = null;
+
     public Server(CloudSim simulation, ResourceBundle resources) {
         super(simulation, Collections.singletonList(createHostFromResourceBundle(resources)));
         setName(DEFAULT_NAME + globalID);
         globalID++;
         totalResources = resources;
+
+        List<Server> registered = REGISTRY.computeIfAbsent(simulation, s -> new ArrayList<>());
+        index = registered.size();
+        registered.add(this);
+    }
+
+    /**
+     * @return the dense index of this server among the servers of its simulation
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @param simulation a simulation
+     * @return the servers created in the simulation, in order of {@link #getIndex() index}
+     */
+    public static List<Server> getServers(Simulation simulation) {
+        List<Server> registered = REGISTRY.get(simulation);
+        return registered == null ? List.of() : Collections.unmodifiableList(registered);
+    }
+
+    /**
+     * @param simulation a simulation
+     * @return the number of servers created in the simulation. Every server index is lower.
+     */
+    public static int getNumberOfServers(Simulation simulation) {
+        return getServers(simulation).size();
     }
 
     private static Host createHostFromResourceBundle(ResourceBundle resources) {
@@ -33,11 +88,34 @@ public class Server extends DatacenterSimple {
         return new HostSimple(resources.getMemory(), resources.getBandwidth(), DEFAULT_STORAGE_CAPACITY, peList);
     }
 
+    /**
+     * @return the resources available, in a new ResourceBundle that can be modified
+     * @see #getCapacitySnapshot()
+     */
     public ResourceBundle getAvailableResources() {
-        int bw = (int) this.getHost(0).getBw().getAvailableResource();
-        int cpu = this.getHost(0).getFreePesNumber();
-        int ram = (int) this.getHost(0).getRam().getAvailableResource();
-        return new ResourceBundle(cpu, bw, ram);
+        return getCapacitySnapshot().toResourceBundle();
+    }
+
+    /**
+     * The host is only read if resources have been allocated or freed since the last snapshot.
+     * @return the resources available
+     */
+    public synchronized CapacitySnapshot getCapacitySnapshot() {
+        if (capacitySnapshot == null || capacitySnapshot.getVersion() != capacityVersion) {
+            int bw = (int) this.getHost(0).getBw().getAvailableResource();
+            int cpu = this.getHost(0).getFreePesNumber();
+            int ram = (int) this.getHost(0).getRam().getAvailableResource();
+            capacitySnapshot = new CapacitySnapshot(capacityVersion, cpu, bw, ram);
+        }
+        return capacitySnapshot;
+    }
+
+    /**
+     * Called when a virtual machine is allocated to or deallocated from the host of this server.
+     * @see DistributedApplication#offload(Server, Vm, Cloudlet)
+     */
+    synchronized void capacityChanged() {
+        capacityVersion++;
     }
 
     public ResourceBundle getTotalResources() {
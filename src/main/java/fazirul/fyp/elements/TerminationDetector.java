@@ -0,0 +1,101 @@
+package fazirul.fyp.elements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects the termination of a single distributed simulation: every application is passive (it has nothing left to do
+ * unless a message arrives) and no message is in transit or waiting in a mailbox. Once this holds, no application can
+ * ever become active again, thus all of them can end without any further wait.
+ *
+ * <p>This is the deficit counting of Dijkstra and Scholten, flattened into a single counter as every application runs in
+ * the same process: the counter holds the number of active applications plus the number of messages sent but not yet
+ * taken out of a mailbox. A message is counted before it is sent, and an application taking messages becomes active
+ * before they are uncounted, so the counter cannot reach 0 while some work is left. The simulation has terminated
+ * once it reaches 0.</p>
+ *
+ * @see DistributedApplication#awaitMessagesOrTermination()
+ */
+public class TerminationDetector {
+    /**
+     * Number of active applications plus the number of messages not yet taken out of a mailbox.
+     */
+    private final AtomicLong outstanding;
+
+    private volatile boolean terminated = false;
+
+    /**
+     * The applications to release from waiting once the simulation has terminated.
+     */
+    private final List<DistributedApplication> applications;
+
+    /**
+     * @param applications the applications participating in the distributed simulation. All of them start active.
+     */
+    TerminationDetector(List<DistributedApplication> applications) {
+        this.applications = new ArrayList<>(applications);
+        this.outstanding = new AtomicLong(applications.size());
+        if (applications.isEmpty()) {
+            terminate();
+        }
+    }
+
+    /**
+     * Called by an active application before it sends a message.
+     */
+    void messageSent() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Called when messages are gone without being taken by an active application, e.g. combined with another message
+     * in a mailbox, or discarded by an application that has ended.
+     *
+     * @param numberOfMessages the number of messages gone
+     */
+    void messagesDiscarded(int numberOfMessages) {
+        add(-numberOfMessages);
+    }
+
+    /**
+     * Called by an application after taking messages out of its mailbox.
+     *
+     * @param numberOfMessages the number of messages taken
+     * @param wasPassive true if the application was passive, in which case it becomes active
+     */
+    void messagesTaken(int numberOfMessages, boolean wasPassive) {
+        add((wasPassive ? 1 : 0) - numberOfMessages);
+    }
+
+    /**
+     * Called by an active application that has nothing left to do unless a message arrives, or that has ended.
+     */
+    void applicationPassive() {
+        add(-1);
+    }
+
+    /**
+     * @return true once every application is passive and no message is left
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Declares the simulation terminated and releases every application waiting for messages.
+     * Called when the counter reaches 0, or by the {@link VirtualTimeEngine} once no event is left.
+     */
+    void terminate() {
+        terminated = true;
+        for (DistributedApplication app : applications) {
+            app.incomingMessages.close();
+        }
+    }
+
+    private void add(long delta) {
+        if (delta != 0 && outstanding.addAndGet(delta) == 0) {
+            terminate();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package fazirul.fyp.elements;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs a single distributed simulation in virtual time, as an alternative to running every
+ * {@link DistributedApplication} in its own thread against the wall clock.
+ *
+ * <p>The engine is a discrete event loop with a single thread. There are two kinds of events:
+ * <ul>
+ *     <li>a message delivery, scheduled at the send time plus the network latency</li>
+ *     <li>an orchestration step of an application, scheduled at the local (virtual) clock of the application</li>
+ * </ul>
+ * Waiting periods ({@link DistributedApplication#sleep(long)}) and the compute cost of each orchestration step
+ * advance the local clock of the application instead of blocking a thread. An application waiting for messages
+ * ({@link DistributedApplication#awaitMessages(long)}) is stepped again at the next delivery or at the timeout.
+ * Thus a run finishes as fast as the CPU can process it, and the reported runtime does not depend on the host.
+ * </p>
+ *
+ * <p>Applications waiting without timeout ({@link DistributedApplication#awaitMessagesOrTermination()}) have no step
+ * scheduled. Once no event is left, the distributed simulation is quiescent: the {@link TerminationDetector} is told so,
+ * and each application still running is stepped one last time to end.</p>
+ *
+ * <p>Events are ordered by time. At the same time, message deliveries are processed before orchestration steps,
+ * and remaining ties are broken by the order of scheduling, so that every run is deterministic.</p>
+ *
+ * @see DistSimManager#setVirtualTimeMode(boolean)
+ */
+public class VirtualTimeEngine {
+    /**
+     * Future events of the current run, ordered by {@link VirtualEvent#compareTo(VirtualEvent)}.
+     */
+    private final PriorityQueue<VirtualEvent> futureEvents = new PriorityQueue<>();
+
+    /**
+     * Virtual time (in milliseconds) charged for each call to {@link DistributedApplication#orchestrate()}.
+     */
+    private final long stepCostInMilliseconds;
+
+    /**
+     * Used to break ties between events at the same time.
+     */
+    private long sequence = 0;
+
+    /**
+     * The virtual time of the event currently being processed (in milliseconds).
+     */
+    private long clock = 0;
+
+    /**
+     * @param stepCostInMilliseconds virtual time charged for each orchestration step. Must be positive
+     *                               so that an application can never loop forever at the same instant.
+     */
+    public VirtualTimeEngine(long stepCostInMilliseconds) {
+        if (stepCostInMilliseconds <= 0) {
+            throw new IllegalArgumentException("Step cost of the virtual time engine must be positive.");
+        }
+        this.stepCostInMilliseconds = stepCostInMilliseconds;
+    }
+
+    /**
+     * Runs the distributed algorithm of every application until all of them have ended.
+     *
+     * @param applications the applications participating in this run
+     * @param terminationDetector the termination detector of this run
+     * @see DistributedApplication#startDistributedAlgorithm()
+     */
+    public void run(List<DistributedApplication> applications, TerminationDetector terminationDetector) {
+        for (DistributedApplication app : applications) {
+            if (app.startVirtualAlgorithm(this)) {
+                scheduleStep(app);
+            }
+        }
+
+        do {
+            processEvents();
+
+            //quiescent: every application still running waits for messages that can no longer come
+            terminationDetector.terminate();
+            for (DistributedApplication app : applications) {
+                if (!app.ended && app.finishVirtualAlgorithm(clock, stepCostInMilliseconds)) {
+                    scheduleStep(app);
+                }
+            }
+        } while (!futureEvents.isEmpty());
+    }
+
+    private void processEvents() {
+        while (!futureEvents.isEmpty()) {
+            VirtualEvent evt = futureEvents.poll();
+            clock = evt.time;
+            if (evt.message != null) {
+                evt.target.receive(evt.message);
+                if (evt.target.wakeUpVirtualAlgorithm(clock)) {
+                    scheduleStep(evt.target);
+                }
+            } else if (evt.generation == evt.target.getVirtualStepGeneration()
+                    && evt.target.stepVirtualAlgorithm(stepCostInMilliseconds)) {
+                scheduleStep(evt.target);
+            }
+        }
+    }
+
+    /**
+     * @return the virtual time of the event currently being processed (in milliseconds)
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /**
+     * Delivers the message to the receiver once the latency has passed.
+     *
+     * @param receiver the application receiving the message
+     * @param message the message
+     * @param sendTime the virtual time at which the message is sent (in milliseconds)
+     * @param latencyInMilliseconds the network latency
+     */
+    void scheduleDelivery(DistributedApplication receiver, MessageInterface message, long sendTime, long latencyInMilliseconds) {
+        futureEvents.add(new VirtualEvent(sendTime + latencyInMilliseconds, sequence++, receiver, message, 0));
+    }
+
+    private void scheduleStep(DistributedApplication app) {
+        if (app.getNextVirtualStepTime() == DistributedApplication.NO_TIMEOUT) {
+            return; //only a delivery or the end of the run can wake the application up
+        }
+        futureEvents.add(new VirtualEvent(app.getNextVirtualStepTime(), sequence++, app, null, app.getVirtualStepGeneration()));
+    }
+
+    /**
+     * A message delivery (if {@link #message} is not null) or an orchestration step of {@link #target}.
+     * A step is discarded if its {@link #generation} is outdated, i.e. the application was woken up earlier by a message.
+     */
+    private static class VirtualEvent implements Comparable<VirtualEvent> {
+        final long time;
+        final long sequence;
+        final DistributedApplication target;
+        final MessageInterface message;
+        final int generation;
+
+        VirtualEvent(long time, long sequence, DistributedApplication target, MessageInterface message, int generation) {
+            this.time = time;
+            this.sequence = sequence;
+            this.target = target;
+            this.message = message;
+            this.generation = generation;
+        }
+
+        @Override
+        public int compareTo(VirtualEvent other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            boolean isDelivery = message != null;
+            boolean isOtherDelivery = other.message != null;
+            if (isDelivery != isOtherDelivery) {
+                return isDelivery ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package fazirul.fyp.elements.topology;
+
+import java.util.Arrays;
+
+/**
+ * An undirected network topology between the applications participating in a distributed simulation.
+ * Nodes are identified by the index (slot) of the application, from 0 to {@link #getNodeCapacity()} - 1.
+ * Slots of applications that have left are not part of the topology.
+ *
+ * <p>A generated topology is stored in compressed sparse row (CSR) form: the neighbours of node i are
+ * {@link #adjacency}[{@link #offsets}[i]] to {@link #adjacency}[{@link #offsets}[i + 1] - 1], sorted in increasing order.
+ * A complete graph is not stored at all, as the neighbours of each node can be computed.</p>
+ *
+ * <p>When applications join or leave, the topology is patched instead of generated again (see
+ * {@link TopologyGenerator#join(Topology, int)} and {@link TopologyGenerator#leave(Topology, int)}).
+ * Only the rows of the nodes involved are copied out of the CSR arrays into {@link #rows}, where they are no longer sorted.</p>
+ *
+ * @see TopologyGenerator
+ */
+public class Topology {
+    private static final int INITIAL_ROW_CAPACITY = 4;
+
+    private final boolean complete;
+
+    /**
+     * Number of nodes covered by {@link #offsets}.
+     */
+    private final int numberOfGeneratedNodes;
+
+    /**
+     * Start of the neighbours of each generated node in {@link #adjacency}, with one extra element at the end.
+     * Null for a complete graph.
+     */
+    private final int[] offsets;
+
+    /**
+     * The neighbours of all generated nodes. Null for a complete graph.
+     */
+    private final int[] adjacency;
+
+    /**
+     * Neighbours of the nodes patched since the topology was generated, each with {@link #rowSizes} elements in use.
+     * Null for a node that was not patched, in which case its neighbours are read from {@link #adjacency}.
+     */
+    private int[][] rows;
+    private int[] rowSizes;
+
+    /**
+     * The nodes currently in the topology, in no particular order. Used for random sampling and for the complete graph.
+     */
+    private int[] members;
+
+    /**
+     * Position of each node in {@link #members}, -1 if the node is not in the topology.
+     */
+    private int[] positionOf;
+
+    private int numberOfNodes;
+    private long numberOfEdges;
+
+    /**
+     * The node that joined most recently and is still in the topology. -1 if empty.
+     */
+    private int lastJoinedNode;
+
+    private Topology(int numberOfNodes, int[] offsets, int[] adjacency) {
+        this.complete = offsets == null;
+        this.numberOfGeneratedNodes = numberOfNodes;
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+        this.numberOfNodes = numberOfNodes;
+        this.numberOfEdges = complete ? 0 : adjacency.length / 2;
+        this.lastJoinedNode = numberOfNodes - 1;
+
+        int capacity = Math.max(numberOfNodes, 1);
+        rows = new int[capacity][];
+        rowSizes = new int[capacity];
+        members = new int[capacity];
+        positionOf = new int[capacity];
+        Arrays.fill(positionOf, -1);
+        for (int i = 0; i < numberOfNodes; i++) {
+            members[i] = i;
+            positionOf[i] = i;
+        }
+    }
+
+    /**
+     * @param numberOfNodes the number of nodes
+     * @return a topology in which every node is connected to every other node (network diameter = 1)
+     */
+    public static Topology complete(int numberOfNodes) {
+        return new Topology(numberOfNodes, null, null);
+    }
+
+    /**
+     * Builds a topology from a list of undirected edges. Self-loops and duplicate edges are dropped.
+     *
+     * @param numberOfNodes the number of nodes
+     * @param sources the first endpoint of each edge
+     * @param targets the second endpoint of each edge
+     * @param numberOfEdges the number of edges, i.e. the number of elements used in sources and targets
+     * @return the topology
+     */
+    public static Topology fromEdges(int numberOfNodes, int[] sources, int[] targets, int numberOfEdges) {
+        int[] offsets = new int[numberOfNodes + 1];
+        for (int e = 0; e < numberOfEdges; e++) {
+            if (sources[e] == targets[e]) { continue; }
+            offsets[sources[e] + 1]++;
+            offsets[targets[e] + 1]++;
+        }
+        for (int i = 0; i < numberOfNodes; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] adjacency = new int[offsets[numberOfNodes]];
+        int[] next = Arrays.copyOf(offsets, numberOfNodes);
+        for (int e = 0; e < numberOfEdges; e++) {
+            if (sources[e] == targets[e]) { continue; }
+            adjacency[next[sources[e]]++] = targets[e];
+            adjacency[next[targets[e]]++] = sources[e];
+        }
+
+        //sort each row and remove duplicates, compacting the adjacency array in place
+        int write = 0;
+        for (int i = 0; i < numberOfNodes; i++) {
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            Arrays.sort(adjacency, start, end);
+            offsets[i] = write;
+            for (int k = start; k < end; k++) {
+                if (k > start && adjacency[k] == adjacency[k - 1]) { continue; }
+                adjacency[write++] = adjacency[k];
+            }
+        }
+        offsets[numberOfNodes] = write;
+
+        return new Topology(numberOfNodes, offsets, write == adjacency.length ? adjacency : Arrays.copyOf(adjacency, write));
+    }
+
+    /**
+     * @return the number of nodes currently in the topology
+     */
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**
+     * @return an upper bound (exclusive) on the index of the nodes
+     */
+    public int getNodeCapacity() {
+        return positionOf.length;
+    }
+
+    /**
+     * @param node the node
+     * @return true if the node is currently in the topology
+     */
+    public boolean contains(int node) {
+        return node >= 0 && node < positionOf.length && positionOf[node] >= 0;
+    }
+
+    /**
+     * @param position from 0 to {@link #getNumberOfNodes()} - 1
+     * @return the node at that position. Positions change when nodes leave.
+     */
+    public int getNodeAt(int position) {
+        return members[position];
+    }
+
+    /**
+     * @return the node that joined most recently and is still in the topology, -1 if the topology is empty
+     */
+    public int getLastJoinedNode() {
+        return lastJoinedNode;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param node the node
+     * @return the number of neighbours of the node
+     */
+    public int getDegree(int node) {
+        if (complete) {
+            return numberOfNodes - 1;
+        }
+        if (rows[node] != null) {
+            return rowSizes[node];
+        }
+        return node < numberOfGeneratedNodes ? offsets[node + 1] - offsets[node] : 0;
+    }
+
+    /**
+     * @param node the node
+     * @param k from 0 to {@link #getDegree(int)} - 1
+     * @return the k-th neighbour of the node
+     */
+    public int getNeighbour(int node, int k) {
+        if (complete) {
+            return members[k < positionOf[node] ? k : k + 1];
+        }
+        if (rows[node] != null) {
+            return rows[node][k];
+        }
+        return adjacency[offsets[node] + k];
+    }
+
+    /**
+     * @return the number of undirected edges
+     */
+    public long getNumberOfEdges() {
+        if (complete) {
+            return (long) numberOfNodes * (numberOfNodes - 1) / 2;
+        }
+        return numberOfEdges;
+    }
+
+    /**
+     * Adds a node without any edges. In a complete graph, the node is connected to every other node.
+     *
+     * @param node the node, must not be in the topology already
+     */
+    public void addNode(int node) {
+        if (contains(node)) {
+            throw new IllegalArgumentException("Node " + node + " is already in the topology.");
+        }
+        ensureCapacity(node + 1);
+        if (!complete) {
+            rows[node] = new int[INITIAL_ROW_CAPACITY];
+            rowSizes[node] = 0;
+        }
+        members[numberOfNodes] = node;
+        positionOf[node] = numberOfNodes++;
+        lastJoinedNode = node;
+    }
+
+    /**
+     * Connects both nodes. Does nothing for a complete graph, a self-loop or an existing edge.
+     *
+     * @param a a node in the topology
+     * @param b another node in the topology
+     */
+    public void addEdge(int a, int b) {
+        if (complete || a == b) {
+            return;
+        }
+        for (int k = 0; k < getDegree(a); k++) {
+            if (getNeighbour(a, k) == b) { return; }
+        }
+        appendToRow(a, b);
+        appendToRow(b, a);
+        numberOfEdges++;
+    }
+
+    /**
+     * Removes the node and all of its edges. Only the rows of its neighbours are changed.
+     *
+     * @param node a node in the topology
+     * @return the former neighbours of the node (empty for a complete graph)
+     */
+    public int[] removeNode(int node) {
+        int[] formerNeighbours = new int[complete ? 0 : getDegree(node)];
+        for (int k = 0; k < formerNeighbours.length; k++) {
+            formerNeighbours[k] = getNeighbour(node, k);
+        }
+        for (int neighbour : formerNeighbours) {
+            removeFromRow(neighbour, node);
+        }
+        numberOfEdges -= formerNeighbours.length;
+        if (!complete) {
+            rows[node] = new int[0];
+            rowSizes[node] = 0;
+        }
+
+        //swap the last member into the position of the removed node
+        int position = positionOf[node];
+        int last = members[--numberOfNodes];
+        members[position] = last;
+        positionOf[last] = position;
+        positionOf[node] = -1;
+
+        if (node == lastJoinedNode) {
+            if (formerNeighbours.length > 0) {
+                lastJoinedNode = formerNeighbours[0];
+            } else {
+                lastJoinedNode = numberOfNodes > 0 ? members[numberOfNodes - 1] : -1;
+            }
+        }
+        return formerNeighbours;
+    }
+
+    /**
+     * Estimates the network diameter with a double sweep: a breadth-first search from a node, then another from the node
+     * found furthest away. Exact for trees and lines, a lower bound otherwise. Runs in O(nodes + edges).
+     *
+     * @return the estimated diameter, or -1 if the topology is not connected
+     */
+    public int estimateDiameter() {
+        if (numberOfNodes <= 1) {
+            return 0;
+        }
+        if (complete) {
+            return 1;
+        }
+
+        int[] distance = new int[getNodeCapacity()];
+        int[] queue = new int[numberOfNodes];
+        int furthest = breadthFirstSearch(members[0], distance, queue);
+        if (furthest < 0) {
+            return -1;
+        }
+        return distance[breadthFirstSearch(furthest, distance, queue)];
+    }
+
+    /**
+     * @return the node furthest from the source (distances are written into distance), or -1 if some node is unreachable
+     */
+    private int breadthFirstSearch(int source, int[] distance, int[] queue) {
+        Arrays.fill(distance, -1);
+        distance[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int k = 0; k < getDegree(node); k++) {
+                int neighbour = getNeighbour(node, k);
+                if (distance[neighbour] < 0) {
+                    distance[neighbour] = distance[node] + 1;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        return tail == numberOfNodes ? queue[tail - 1] : -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= positionOf.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, positionOf.length * 2);
+        int oldCapacity = positionOf.length;
+        rows = Arrays.copyOf(rows, newCapacity);
+        rowSizes = Arrays.copyOf(rowSizes, newCapacity);
+        members = Arrays.copyOf(members, newCapacity);
+        positionOf = Arrays.copyOf(positionOf, newCapacity);
+        Arrays.fill(positionOf, oldCapacity, newCapacity, -1);
+    }
+
+    /**
+     * Copies the row of a generated node out of the CSR arrays, so that it can be changed.
+     */
+    private void patchRow(int node) {
+        if (rows[node] != null) {
+            return;
+        }
+        int degree = getDegree(node);
+        int[] row = new int[Math.max(degree * 2, INITIAL_ROW_CAPACITY)];
+        if (degree > 0) {
+            System.arraycopy(adjacency, offsets[node], row, 0, degree);
+        }
+        rows[node] = row;
+        rowSizes[node] = degree;
+    }
+
+    private void appendToRow(int node, int neighbour) {
+        patchRow(node);
+        if (rowSizes[node] == rows[node].length) {
+            rows[node] = Arrays.copyOf(rows[node], Math.max(rowSizes[node] * 2, INITIAL_ROW_CAPACITY));
+        }
+        rows[node][rowSizes[node]++] = neighbour;
+    }
+
+    private void removeFromRow(int node, int neighbour) {
+        patchRow(node);
+        int[] row = rows[node];
+        for (int k = 0; k < rowSizes[node]; k++) {
+            if (row[k] == neighbour) {
+                row[k] = row[--rowSizes[node]];
+                return;
+            }
+        }
+    }
+}
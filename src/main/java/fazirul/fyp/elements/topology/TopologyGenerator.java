@@ -0,0 +1,49 @@
+package fazirul.fyp.elements.topology;
+
+/**
+ * Creates the {@link Topology} for a distributed simulation, given the number of participating applications.
+ * Implementations can be found in {@link TopologyGenerators}.
+ *
+ * <p>The topology is generated once. Afterwards, applications joining or leaving are patched into the existing
+ * topology with {@link #join(Topology, int)} and {@link #leave(Topology, int)}, which only rewire the neighbours
+ * of the node concerned.</p>
+ *
+ * @see fazirul.fyp.elements.DistSimManager#setTopologyGenerator(TopologyGenerator)
+ */
+public interface TopologyGenerator {
+    /**
+     * @param numberOfNodes the number of participating applications
+     * @return the topology between them
+     */
+    Topology generate(int numberOfNodes);
+
+    /**
+     * Adds a node to a topology previously generated by this generator.
+     * By default, the node is connected to the node that joined most recently (i.e. the end of a line).
+     *
+     * @param topology the topology
+     * @param node the node joining
+     */
+    default void join(Topology topology, int node) {
+        int previous = topology.getLastJoinedNode();
+        topology.addNode(node);
+        if (previous >= 0) {
+            topology.addEdge(node, previous);
+        }
+    }
+
+    /**
+     * Removes a node from a topology previously generated by this generator.
+     * By default, the former neighbours of the node are then connected one after the other, so that the topology stays
+     * connected while the degree of each neighbour grows by at most 1. In a line, this connects both sides of the node.
+     *
+     * @param topology the topology
+     * @param node the node leaving
+     */
+    default void leave(Topology topology, int node) {
+        int[] formerNeighbours = topology.removeNode(node);
+        for (int k = 0; k + 1 < formerNeighbours.length; k++) {
+            topology.addEdge(formerNeighbours[k], formerNeighbours[k + 1]);
+        }
+    }
+}
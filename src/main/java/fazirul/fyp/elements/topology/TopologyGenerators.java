@@ -0,0 +1,314 @@
+package fazirul.fyp.elements.topology;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Common {@link TopologyGenerator topology generators}. Random generators take a seed, so that the same topology is
+ * generated for the same number of nodes.
+ *
+ * <p>Each generator also patches joining nodes into the topology the way it would have generated them, as far as
+ * possible without rewiring other nodes. A joining node is always the last node in the
+ * {@link Topology#getNodeAt(int) positions} of the topology.</p>
+ */
+public final class TopologyGenerators {
+    private TopologyGenerators() {}
+
+    /**
+     * Each node is connected to the previous and the next node (i.e. maximum network diameter).
+     */
+    public static TopologyGenerator line() {
+        return n -> {
+            EdgeList edges = new EdgeList(n);
+            for (int i = 0; i + 1 < n; i++) {
+                edges.add(i, i + 1);
+            }
+            return edges.toTopology(n);
+        };
+    }
+
+    /**
+     * Each node is connected to every other node (i.e. network diameter = 1). The adjacency is not stored.
+     */
+    public static TopologyGenerator complete() {
+        return Topology::complete;
+    }
+
+    /**
+     * Random graph in which every node has (approximately) the given degree, using the configuration model:
+     * each node gets degree stubs, and the shuffled stubs are paired up. Self-loops and duplicate edges are dropped,
+     * thus a few nodes may have a lower degree.
+     *
+     * @param degree the degree of each node
+     * @param seed the random seed
+     */
+    public static TopologyGenerator randomRegular(int degree, long seed) {
+        Random joinRandom = new Random(seed);
+        return incremental(n -> {
+            Random random = new Random(seed);
+            int[] stubs = new int[n * degree - (n * degree) % 2];
+            for (int s = 0; s < stubs.length; s++) {
+                stubs[s] = s / degree;
+            }
+            for (int s = stubs.length - 1; s > 0; s--) {
+                int other = random.nextInt(s + 1);
+                int tmp = stubs[s];
+                stubs[s] = stubs[other];
+                stubs[other] = tmp;
+            }
+
+            EdgeList edges = new EdgeList(stubs.length / 2);
+            for (int s = 0; s + 1 < stubs.length; s += 2) {
+                edges.add(stubs[s], stubs[s + 1]);
+            }
+            return edges.toTopology(n);
+        }, (topology, node) -> { //connect to random nodes
+            int others = topology.getNumberOfNodes() - 1;
+            for (int d = 0; d < Math.min(degree, others); d++) {
+                topology.addEdge(node, topology.getNodeAt(joinRandom.nextInt(others)));
+            }
+        });
+    }
+
+    /**
+     * Erdos-Renyi random graph G(n, p): each pair of nodes is connected with the given probability.
+     * Pairs are skipped geometrically (Batagelj and Brandes), so this runs in O(nodes + edges).
+     *
+     * @param probability the probability of an edge between two nodes
+     * @param seed the random seed
+     */
+    public static TopologyGenerator erdosRenyi(double probability, long seed) {
+        Random joinRandom = new Random(seed);
+        return incremental(n -> {
+            if (probability >= 1) {
+                return Topology.complete(n);
+            }
+            EdgeList edges = new EdgeList((int) Math.min(Integer.MAX_VALUE - 8, probability * n * (n - 1) / 2 + 16));
+            if (probability > 0) {
+                Random random = new Random(seed);
+                double logOneMinusP = Math.log(1 - probability);
+                int v = 1;
+                long w = -1;
+                while (v < n) {
+                    w += 1 + (long) Math.floor(Math.log(1 - random.nextDouble()) / logOneMinusP);
+                    while (w >= v && v < n) {
+                        w -= v;
+                        v++;
+                    }
+                    if (v < n) {
+                        edges.add(v, (int) w);
+                    }
+                }
+            }
+            return edges.toTopology(n);
+        }, (topology, node) -> { //connect to each other node with the given probability, skipping geometrically
+            if (probability <= 0 || topology.isComplete()) { return; }
+            int others = topology.getNumberOfNodes() - 1;
+            double logOneMinusP = Math.log(1 - probability);
+            long position = -1;
+            while (true) {
+                position += 1 + (long) Math.floor(Math.log(1 - joinRandom.nextDouble()) / logOneMinusP);
+                if (position >= others) { break; }
+                topology.addEdge(node, topology.getNodeAt((int) position));
+            }
+        });
+    }
+
+    /**
+     * Watts-Strogatz small-world graph: a ring in which each node is connected to its nearest neighbours
+     * (half of them on each side), after which each edge is rewired to a random node with the given probability.
+     *
+     * @param nearestNeighbours the (even) number of neighbours of each node in the ring
+     * @param rewiringProbability the probability of rewiring each edge
+     * @param seed the random seed
+     */
+    public static TopologyGenerator wattsStrogatz(int nearestNeighbours, double rewiringProbability, long seed) {
+        Random joinRandom = new Random(seed);
+        return incremental(n -> {
+            Random random = new Random(seed);
+            EdgeList edges = new EdgeList(n * (nearestNeighbours / 2));
+            for (int i = 0; i < n; i++) {
+                for (int j = 1; j <= nearestNeighbours / 2; j++) {
+                    int target = (i + j) % n;
+                    if (n > 1 && random.nextDouble() < rewiringProbability) {
+                        do {
+                            target = random.nextInt(n);
+                        } while (target == i);
+                    }
+                    edges.add(i, target);
+                }
+            }
+            return edges.toTopology(n);
+        }, (topology, node) -> { //connect to the nodes that joined just before, each rewired with the given probability
+            int position = topology.getNumberOfNodes() - 1;
+            for (int j = 1; j <= nearestNeighbours / 2 && position - j >= 0; j++) {
+                int target = topology.getNodeAt(position - j);
+                if (joinRandom.nextDouble() < rewiringProbability) {
+                    target = topology.getNodeAt(joinRandom.nextInt(position));
+                }
+                topology.addEdge(node, target);
+            }
+        });
+    }
+
+    /**
+     * Two-dimensional grid with ceil(sqrt(n)) columns. Nodes are placed row by row, and each node is connected to the
+     * node on its right and the node below it.
+     */
+    public static TopologyGenerator grid() {
+        return incremental(n -> {
+            int columns = (int) Math.ceil(Math.sqrt(n));
+            EdgeList edges = new EdgeList(2 * n);
+            for (int i = 0; i < n; i++) {
+                if ((i + 1) % columns != 0 && i + 1 < n) {
+                    edges.add(i, i + 1);
+                }
+                if (i + columns < n) {
+                    edges.add(i, i + columns);
+                }
+            }
+            return edges.toTopology(n);
+        }, (topology, node) -> { //connect to the node on the left and the node above, in the current number of columns
+            int position = topology.getNumberOfNodes() - 1;
+            int columns = (int) Math.ceil(Math.sqrt(topology.getNumberOfNodes()));
+            if (position % columns != 0) {
+                topology.addEdge(node, topology.getNodeAt(position - 1));
+            }
+            if (position >= columns) {
+                topology.addEdge(node, topology.getNodeAt(position - columns));
+            }
+        });
+    }
+
+    /**
+     * Complete k-ary tree rooted at node 0. The parent of node i is node (i - 1) / k.
+     *
+     * @param arity the number of children of each node
+     */
+    public static TopologyGenerator karyTree(int arity) {
+        return incremental(n -> {
+            EdgeList edges = new EdgeList(n);
+            for (int i = 1; i < n; i++) {
+                edges.add(i, (i - 1) / arity);
+            }
+            return edges.toTopology(n);
+        }, (topology, node) -> { //connect to the parent, by position
+            int position = topology.getNumberOfNodes() - 1;
+            if (position > 0) {
+                topology.addEdge(node, topology.getNodeAt((position - 1) / arity));
+            }
+        });
+    }
+
+    /**
+     * Reads the edges from a file with one edge per line, given by the indices of both nodes separated by whitespace.
+     * Empty lines and lines starting with '#' are ignored. Edges to nodes that do not exist in a distributed simulation
+     * (index greater or equal to the number of participating applications) are ignored as well.
+     * A joining node is connected to its neighbours in the file only, and leaving nodes are not bridged.
+     *
+     * @param filePath path of the edge list file
+     * @throws IOException if the file cannot be read
+     */
+    public static TopologyGenerator fromEdgeListFile(String filePath) throws IOException {
+        EdgeList fileEdges = new EdgeList(1024);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) { continue; }
+                String[] nodes = line.split("\\s+");
+                fileEdges.add(Integer.parseInt(nodes[0]), Integer.parseInt(nodes[1]));
+            }
+        }
+
+        int numberOfFileNodes = 0;
+        for (int e = 0; e < fileEdges.size; e++) {
+            numberOfFileNodes = Math.max(numberOfFileNodes, Math.max(fileEdges.sources[e], fileEdges.targets[e]) + 1);
+        }
+        Topology fileTopology = fileEdges.toTopology(numberOfFileNodes);
+
+        return new TopologyGenerator() {
+            @Override
+            public Topology generate(int n) {
+                EdgeList edges = new EdgeList(fileEdges.size);
+                for (int e = 0; e < fileEdges.size; e++) {
+                    if (fileEdges.sources[e] < n && fileEdges.targets[e] < n) {
+                        edges.add(fileEdges.sources[e], fileEdges.targets[e]);
+                    }
+                }
+                return edges.toTopology(n);
+            }
+
+            @Override
+            public void join(Topology topology, int node) {
+                topology.addNode(node);
+                if (!fileTopology.contains(node)) { return; }
+                for (int k = 0; k < fileTopology.getDegree(node); k++) {
+                    int neighbour = fileTopology.getNeighbour(node, k);
+                    if (topology.contains(neighbour)) {
+                        topology.addEdge(node, neighbour);
+                    }
+                }
+            }
+
+            @Override
+            public void leave(Topology topology, int node) {
+                topology.removeNode(node);
+            }
+        };
+    }
+
+    /**
+     * @param generator generates the whole topology
+     * @param connectOnJoin connects a node that was just added to the topology
+     * @return a generator that uses connectOnJoin instead of the {@link TopologyGenerator#join(Topology, int) default}
+     */
+    private static TopologyGenerator incremental(IntFunction<Topology> generator, ObjIntConsumer<Topology> connectOnJoin) {
+        return new TopologyGenerator() {
+            @Override
+            public Topology generate(int numberOfNodes) {
+                return generator.apply(numberOfNodes);
+            }
+
+            @Override
+            public void join(Topology topology, int node) {
+                topology.addNode(node);
+                connectOnJoin.accept(topology, node);
+            }
+        };
+    }
+
+    /**
+     * Growable list of undirected edges, stored as two int arrays.
+     */
+    private static class EdgeList {
+        int[] sources;
+        int[] targets;
+        int size = 0;
+
+        EdgeList(int initialCapacity) {
+            sources = new int[Math.max(initialCapacity, 1)];
+            targets = new int[Math.max(initialCapacity, 1)];
+        }
+
+        void add(int source, int target) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            size++;
+        }
+
+        Topology toTopology(int numberOfNodes) {
+            return Topology.fromEdges(numberOfNodes, sources, targets, size);
+        }
+    }
+}
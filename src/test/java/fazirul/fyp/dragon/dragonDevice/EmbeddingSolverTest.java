@@ -0,0 +1,221 @@
+package fazirul.fyp.dragon.dragonDevice;
+
+import fazirul.fyp.dragon.utils.TaskAssignment;
+import fazirul.fyp.dragon.utils.VirtualMachineHandler;
+import fazirul.fyp.elements.ResourceBundle;
+import fazirul.fyp.elements.Server;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link EmbeddingSolver} against an exhaustive search, and the {@link EmbeddingBudgetPolicy} applied when its
+ * budget is spent. The virtual machines are those of config.json.
+ */
+public class EmbeddingSolverTest {
+    private static final int NUMBER_OF_SERVERS = 3;
+
+    private final VirtualMachineHandler vmHandler = VirtualMachineHandler.getInstance();
+    private Server[] servers;
+
+    @Before
+    public void createServers() {
+        CloudSim simulation = new CloudSim(1);
+        servers = new Server[NUMBER_OF_SERVERS];
+        for (int s = 0; s < NUMBER_OF_SERVERS; s++) {
+            servers[s] = new Server(simulation, new ResourceBundle(16, 4096, 8192));
+        }
+    }
+
+    private TaskAssignment candidate(int task, int server, int virtualMachineID, int utility) {
+        TaskAssignment t = new TaskAssignment(task, servers[server], virtualMachineID);
+        t.setPrivateUtility(utility);
+        return t;
+    }
+
+    /**
+     * @return the candidates, from the highest to the lowest utility, as kept by {@link AssignmentVector}
+     */
+    private static List<TaskAssignment> sorted(List<TaskAssignment> candidates) {
+        List<TaskAssignment> result = new ArrayList<>(candidates);
+        result.sort(Comparator.comparingInt(TaskAssignment::getPrivateUtility).reversed());
+        return result;
+    }
+
+    @Test
+    public void findsHighestUtilityRatherThanFirstFound() {
+        //the previous backtracking took 0 -> vm 0 first, then only 1 -> vm 7 fits: 90 + 10
+        List<TaskAssignment> candidates = sorted(List.of(
+                candidate(0, 0, 0, 90), candidate(0, 0, 7, 20),
+                candidate(1, 0, 5, 85), candidate(1, 0, 7, 10)));
+        ResourceBundle[] maximum = {new ResourceBundle(4, 4096, 8192), null, null};
+
+        EmbeddingSolver solver = new EmbeddingSolver(candidates, 2, vmHandler);
+        TaskAssignment[] result = solver.solve(maximum);
+
+        assertNotNull(result);
+        assertEquals(7, result[0].getVirtualMachineID());
+        assertEquals(5, result[1].getVirtualMachineID());
+        assertEquals(105, totalUtility(result));
+        assertFalse(solver.isBudgetExhausted());
+    }
+
+    @Test
+    public void matchesExhaustiveSearch() {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            int numberOfTasks = 1 + random.nextInt(4);
+            List<TaskAssignment> candidates = randomCandidates(random, numberOfTasks, 12);
+            ResourceBundle[] maximum = randomResources(random);
+
+            EmbeddingSolver solver = new EmbeddingSolver(candidates, numberOfTasks, vmHandler);
+            TaskAssignment[] result = solver.solve(maximum);
+            int expected = exhaustiveSearch(candidates, numberOfTasks, maximum, 0, new TaskAssignment[numberOfTasks]);
+
+            if (expected < 0) {
+                assertNull("seed " + seed, result);
+            } else {
+                assertNotNull("seed " + seed, result);
+                assertFeasible(result, numberOfTasks, maximum);
+                assertEquals("seed " + seed, expected, totalUtility(result));
+            }
+            assertFalse(solver.isBudgetExhausted());
+        }
+    }
+
+    @Test
+    public void returnsNullWhenInfeasible() {
+        //vm 6 demands 3 cpu, both tasks only fit on server 0 which has 4
+        List<TaskAssignment> candidates = sorted(List.of(candidate(0, 0, 6, 50), candidate(1, 0, 6, 40)));
+        ResourceBundle[] maximum = {new ResourceBundle(4, 4096, 8192), new ResourceBundle(0, 0, 0), null};
+        EmbeddingSolver solver = new EmbeddingSolver(candidates, 2, vmHandler);
+        assertNull(solver.solve(maximum));
+        assertFalse(solver.isBudgetExhausted());
+
+        //task 1 has no possible assignment at all
+        solver = new EmbeddingSolver(sorted(List.of(candidate(0, 0, 7, 50))), 2, vmHandler);
+        assertNull(solver.solve(maximum));
+        assertFalse(solver.isBudgetExhausted());
+    }
+
+    @Test
+    public void stopsAtNodeBudget() {
+        Random random = new Random(7);
+        List<TaskAssignment> candidates = randomCandidates(random, 6, 40);
+        ResourceBundle[] maximum = {new ResourceBundle(6, 2048, 4096), new ResourceBundle(6, 2048, 4096),
+                new ResourceBundle(6, 2048, 4096)};
+        EmbeddingSolver solver = new EmbeddingSolver(candidates, 6, vmHandler);
+        int optimum = totalUtility(solver.solve(maximum));
+
+        for (long budget = 1; budget <= 8; budget++) {
+            solver.setBudget(budget, Long.MAX_VALUE);
+            TaskAssignment[] result = solver.solve(maximum);
+            assertTrue(solver.getNodes() <= budget);
+            if (!solver.isBudgetExhausted()) {
+                assertEquals(optimum, totalUtility(result));
+                continue;
+            }
+            if (result != null) {
+                assertFeasible(result, 6, maximum);
+                assertTrue(totalUtility(result) <= optimum);
+            }
+            assertEquals(result != null, EmbeddingBudgetPolicy.BEST_SO_FAR.accept(result != null, true));
+            assertFalse(EmbeddingBudgetPolicy.FAIL.accept(result != null, true));
+        }
+    }
+
+    @Test
+    public void stopsAtTimeBudget() {
+        List<TaskAssignment> candidates = randomCandidates(new Random(3), 4, 20);
+        EmbeddingSolver solver = new EmbeddingSolver(candidates, 4, vmHandler);
+        solver.setBudget(Long.MAX_VALUE, 0);
+        ResourceBundle[] maximum = {new ResourceBundle(16, 4096, 8192), new ResourceBundle(16, 4096, 8192),
+                new ResourceBundle(16, 4096, 8192)};
+        assertNull(solver.solve(maximum));
+        assertTrue(solver.isBudgetExhausted());
+    }
+
+    @Test
+    public void budgetPolicies() {
+        for (EmbeddingBudgetPolicy policy : EmbeddingBudgetPolicy.values()) {
+            assertTrue(policy.accept(true, false));
+            assertFalse(policy.accept(false, false));
+            assertFalse(policy.accept(false, true));
+        }
+        assertTrue(EmbeddingBudgetPolicy.BEST_SO_FAR.accept(true, true));
+        assertFalse(EmbeddingBudgetPolicy.FAIL.accept(true, true));
+    }
+
+    private List<TaskAssignment> randomCandidates(Random random, int numberOfTasks, int numberOfCandidates) {
+        List<TaskAssignment> candidates = new ArrayList<>();
+        for (int c = 0; c < numberOfCandidates; c++) {
+            candidates.add(candidate(random.nextInt(numberOfTasks), random.nextInt(NUMBER_OF_SERVERS), random.nextInt(9),
+                    random.nextInt(100)));
+        }
+        return sorted(candidates);
+    }
+
+    private static ResourceBundle[] randomResources(Random random) {
+        ResourceBundle[] maximum = new ResourceBundle[NUMBER_OF_SERVERS];
+        for (int s = 0; s < NUMBER_OF_SERVERS; s++) {
+            maximum[s] = new ResourceBundle(random.nextInt(8), random.nextInt(1024), random.nextInt(2048));
+        }
+        return maximum;
+    }
+
+    private static int totalUtility(TaskAssignment[] assignments) {
+        int total = 0;
+        for (TaskAssignment t : assignments) {
+            total += t.getPrivateUtility();
+        }
+        return total;
+    }
+
+    /**
+     * @return the highest total utility over every choice of one candidate per task from the given task, -1 if none fits
+     */
+    private int exhaustiveSearch(List<TaskAssignment> candidates, int numberOfTasks, ResourceBundle[] maximum, int task,
+                                 TaskAssignment[] chosen) {
+        if (task == numberOfTasks) {
+            return fits(chosen, maximum) ? totalUtility(chosen) : -1;
+        }
+        int best = -1;
+        for (TaskAssignment t : candidates) {
+            if (t.getTaskID() != task) { continue; }
+            chosen[task] = t;
+            best = Math.max(best, exhaustiveSearch(candidates, numberOfTasks, maximum, task + 1, chosen));
+        }
+        return best;
+    }
+
+    private boolean fits(TaskAssignment[] assignments, ResourceBundle[] maximum) {
+        ResourceBundle[] used = new ResourceBundle[NUMBER_OF_SERVERS];
+        for (TaskAssignment t : assignments) {
+            int s = t.getServer().getIndex();
+            if (used[s] == null) {
+                used[s] = new ResourceBundle(0, 0, 0);
+            }
+            used[s].addResources(vmHandler.getVmResourceUsage(t.getVirtualMachineID()));
+        }
+        for (int s = 0; s < NUMBER_OF_SERVERS; s++) {
+            if (used[s] == null) { continue; }
+            if (maximum[s] == null || !maximum[s].isBounded(used[s])) { return false; }
+        }
+        return true;
+    }
+
+    private void assertFeasible(TaskAssignment[] result, int numberOfTasks, ResourceBundle[] maximum) {
+        assertEquals(numberOfTasks, result.length);
+        for (int task = 0; task < numberOfTasks; task++) {
+            assertEquals(task, result[task].getTaskID());
+        }
+        assertTrue(fits(result, maximum));
+    }
+}